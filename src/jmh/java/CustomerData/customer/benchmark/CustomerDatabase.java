@@ -0,0 +1,125 @@
+package CustomerData.customer.benchmark;
+
+import CustomerData.CustomerDataApplication;
+import CustomerData.customer.repository.CustomerRepository;
+import CustomerData.customer.service.CustomerEmailFilter;
+import CustomerData.customer.service.CustomerService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * benchmark state starting the application without web server on an embedded H2 database seeded with
+ * the given number of customers. Customer i has the email customer{i}@example.com, the name First{i % 1000}
+ * Last{i % 100}, an age between 18 and 90 and every tenth customer is a pro-member
+ */
+@State(Scope.Benchmark)
+public class CustomerDatabase {
+
+    static final int MIN_AGE = 18;
+    static final int MAX_AGE = 90;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    ConfigurableApplicationContext context;
+    CustomerService customerService;
+    CustomerRepository customerRepository;
+    long[] versions;    //version of every seeded customer as far as the single-threaded patch benchmark wrote it
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(CustomerDataApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn",
+                        "customer.cache.enabled=false",
+                        "customer.email-filter.enabled=true")
+                .run();
+        customerService = context.getBean(CustomerService.class);
+        customerRepository = context.getBean(CustomerRepository.class);
+        seed(context.getBean(JdbcTemplate.class));
+        //the JDBC inserts bypass Hibernate, so the email filter is built again
+        context.getBean(CustomerEmailFilter.class).rebuild();
+        versions = new long[rows + 1];
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    /**
+     * @return the id of a random seeded customer
+     */
+    long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rows + 1);
+    }
+
+    /**
+     * @param count number of ids
+     * @return the ids of random seeded customers
+     */
+    List<Long> randomIds(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            ids.add(randomId());
+        return ids;
+    }
+
+    /**
+     * @return the email of a random seeded customer
+     */
+    String randomEmail() {
+        return "customer" + randomId() + "@example.com";
+    }
+
+    /**
+     * @return an email without a customer
+     */
+    String randomMissingEmail() {
+        return "missing" + randomId() + "@example.com";
+    }
+
+    /**
+     * @return a random age of the seeded customers
+     */
+    int randomAge() {
+        return ThreadLocalRandom.current().nextInt(MIN_AGE, MAX_AGE + 1);
+    }
+
+    /**
+     * helper method to insert the customers with JDBC batches
+     */
+    private void seed(JdbcTemplate jdbcTemplate) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            int age = MIN_AGE + i % (MAX_AGE - MIN_AGE + 1);
+            LocalDate dateOfBirth = today.minusYears(age).minusDays(1 + i % 300);
+            batch.add(new Object[]{(long) i, "First" + i % 1000, "Last" + i % 100,
+                    Timestamp.valueOf(dateOfBirth.atStartOfDay()), "customer" + i + "@example.com",
+                    "averyverystrongpassword", i % 10 == 0});
+            if (batch.size() == 10_000 || i == rows) {
+                jdbcTemplate.batchUpdate("INSERT INTO customer (id, first_name, last_name, date_of_birth, email, " +
+                        "password, is_pro_member) VALUES (?, ?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+}
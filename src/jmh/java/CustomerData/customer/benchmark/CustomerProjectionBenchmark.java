@@ -0,0 +1,46 @@
+package CustomerData.customer.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cost of the get/all response, loading and serializing managed entities against CustomerSummary projections.
+ * Run with -prof gc to compare the allocation per request (gc.alloc.rate.norm)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerProjectionBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void objectMapper(CustomerDatabase database) {
+        objectMapper = database.context.getBean(ObjectMapper.class);
+    }
+
+    @Benchmark
+    public byte[] entities(CustomerDatabase database) throws Exception {
+        return objectMapper.writeValueAsBytes(database.customerRepository.findAll(Sort.by("id")));
+    }
+
+    @Benchmark
+    public byte[] summaries(CustomerDatabase database) throws Exception {
+        return objectMapper.writeValueAsBytes(database.customerService.findAll());
+    }
+}
@@ -0,0 +1,79 @@
+package CustomerData.customer.benchmark;
+
+import CustomerData.customer.dto.CustomerSuggestion;
+import CustomerData.customer.service.CustomerSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * latency distribution of the type-ahead search, top 10 results for prefixes of 1 to 8 characters of the names and
+ * emails. The setup loads the CustomerSearchIndex and prints its measured heap usage next to its own estimate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CustomerSearchBenchmark {
+
+    private static final int LIMIT = 10;
+
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Setup
+    public void load(CustomerDatabase database) {
+        customerSearchIndex = database.context.getBean(CustomerSearchIndex.class);
+        long before = usedHeap();
+        customerSearchIndex.load();
+        long after = usedHeap();
+        System.out.printf("search index: %d bytes per customer measured, estimate %s%n",
+                (after - before) / database.rows, customerSearchIndex.getStatistics());
+    }
+
+    @Benchmark
+    public List<CustomerSuggestion> index(CustomerDatabase database) {
+        return customerSearchIndex.search(randomPrefix(database), LIMIT);
+    }
+
+    @Benchmark
+    public List<CustomerSuggestion> service(CustomerDatabase database) {
+        return database.customerService.search(randomPrefix(database), LIMIT);
+    }
+
+    /**
+     * helper method to get the first characters of the first name, last name or email of a random customer
+     */
+    private static String randomPrefix(CustomerDatabase database) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long i = database.randomId();
+        String value = switch (random.nextInt(3)) {
+            case 0 -> "First" + i % 1000;
+            case 1 -> "Last" + i % 100;
+            default -> "customer" + i + "@example.com";
+        };
+        return value.substring(0, random.nextInt(1, Math.min(value.length(), 8) + 1));
+    }
+
+    /**
+     * helper method to measure the used heap after a garbage collection
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,53 @@
+package CustomerData.customer.benchmark;
+
+import CustomerData.customer.Customer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * throughput of serializing customer lists with the ObjectMapper configuration Spring MVC uses for the responses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerSerializationBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<Customer> customers;
+
+    @Setup
+    public void create() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        customers = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++)
+            customers.add(new Customer((long) i, "First" + i % 1000, "Last" + i % 100,
+                    new Date(i * 86_400_000L), "customer" + i + "@example.com", "averyverystrongpassword", i % 10 == 0));
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(customers);
+    }
+}
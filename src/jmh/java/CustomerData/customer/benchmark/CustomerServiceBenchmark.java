@@ -0,0 +1,119 @@
+package CustomerData.customer.benchmark;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerBatch;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.dto.CustomerSummary;
+import CustomerData.customer.exception.CustomerNotFoundException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * latency of the CustomerService finders, the sort, the counters, update and patch. The multi-get of 100 ids
+ * is compared with 100 calls of findById, a lookup of a missing email is answered by the email filter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerServiceBenchmark {
+
+    @Benchmark
+    public Customer findByEmail(CustomerDatabase database) {
+        return database.customerService.findByEmail(database.randomEmail());
+    }
+
+    @Benchmark
+    public Customer findByMissingEmail(CustomerDatabase database) {
+        try {
+            return database.customerService.findByEmail(database.randomMissingEmail());
+        } catch (CustomerNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Customer findById(CustomerDatabase database) {
+        return database.customerService.findById(database.randomId());
+    }
+
+    @Benchmark
+    public List<CustomerSummary> findByName(CustomerDatabase database) {
+        long i = database.randomId();
+        return database.customerService.findByName("First" + i % 1000, "Last" + i % 100);
+    }
+
+    @Benchmark
+    public List<CustomerSummary> findByAge(CustomerDatabase database) {
+        return database.customerService.findByAge(database.randomAge());
+    }
+
+    @Benchmark
+    public List<CustomerSummary> findByAgeRange(CustomerDatabase database) throws Exception {
+        int age = database.randomAge();
+        return database.customerService.findByAgeRange(age, age + 4);
+    }
+
+    /**
+     * baseline: findByAge before it became a date of birth range query, every customer is loaded and compared
+     */
+    @Benchmark
+    public List<CustomerSummary> findByAgeFullScan(CustomerDatabase database) {
+        int age = database.randomAge();
+        return database.customerService.findAll().stream().filter(customer -> customer.getAge() == age).toList();
+    }
+
+    @Benchmark
+    public List<CustomerSummary> findAllProMembers(CustomerDatabase database) {
+        return database.customerService.findAllProMembers();
+    }
+
+    @Benchmark
+    public List<CustomerSummary> sortByDob(CustomerDatabase database) {
+        return database.customerService.sortByDob(true);
+    }
+
+    @Benchmark
+    public long getNumberOfCustomers(CustomerDatabase database) {
+        return database.customerService.getNumberOfCustomers();
+    }
+
+    @Benchmark
+    public long getNumberOfProMembers(CustomerDatabase database) {
+        return database.customerService.getNumberOfProMembers();
+    }
+
+    @Benchmark
+    public CustomerBatch findByIds(CustomerDatabase database) {
+        return database.customerService.findByIds(database.randomIds(100));
+    }
+
+    @Benchmark
+    public void findByIdLoop(CustomerDatabase database, Blackhole blackhole) {
+        for (Long id : database.randomIds(100))
+            blackhole.consume(database.customerService.findById(id));
+    }
+
+    @Benchmark
+    public void update(CustomerDatabase database) throws Exception {
+        long id = database.randomId();
+        database.customerService.update(id, "Updated" + id % 7, null, null, null, null, id % 10 == 0);
+    }
+
+    @Benchmark
+    public void patch(CustomerDatabase database) throws Exception {
+        long id = database.randomId();
+        database.customerService.patch(id, new CustomerPatch("Updated" + id % 7, null, null, null, null, id % 10 == 0,
+                database.versions[(int) id]++));
+    }
+}
@@ -0,0 +1,57 @@
+package CustomerData.customer.benchmark;
+
+import CustomerData.customer.dto.CustomerCursor;
+import CustomerData.customer.dto.CustomerPage;
+import CustomerData.customer.dto.CustomerSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * latency of loading one page at a given depth of the table, keyset pagination against LIMIT/OFFSET
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeysetPaginationBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"0", "0.5", "0.99"})
+    public double depth;
+
+    private String cursor;
+    private int page;
+
+    @Setup
+    public void position(CustomerDatabase database) {
+        long afterId = (long) (database.rows * depth);
+        cursor = afterId == 0 ? null : new CustomerCursor(null, afterId).encode();
+        page = (int) (afterId / PAGE_SIZE);
+    }
+
+    @Benchmark
+    public CustomerPage<CustomerSummary> keyset(CustomerDatabase database) throws Exception {
+        return database.customerService.findAllPage(cursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<CustomerSummary> offset(CustomerDatabase database) {
+        return database.customerRepository.findPageAfterId(0, PageRequest.of(page, PAGE_SIZE));
+    }
+}
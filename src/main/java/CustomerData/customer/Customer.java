@@ -1,13 +1,25 @@
 package CustomerData.customer;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 
 import javax.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
 import java.util.Date;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "uk_customer_email", columnList = "email", unique = true),
+        @Index(name = "idx_customer_name", columnList = "lastName, firstName"),
+        @Index(name = "idx_customer_dob", columnList = "dateOfBirth, id"),
+        @Index(name = "idx_customer_pro_member", columnList = "isProMember")
+})
 @NoArgsConstructor
 @AllArgsConstructor
+@Builder(toBuilder = true)
 @Getter
 @Setter
 @EqualsAndHashCode
@@ -15,13 +27,54 @@ import java.util.Date;
 public class Customer {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_sequence")
+    @SequenceGenerator(name = "customer_sequence", sequenceName = "customer_sequence", allocationSize = 50)
     private Long id;
     private String firstName;
     private String lastName;
-    private int age;
     private Date dateOfBirth;
     private String email;
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
     private boolean isProMember;
+    //incremented by every write, the default fills the column of rows written before it existed
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
+    /**
+     * constructor to initialize a Customer which wasn't stored yet, the version starts at 0
+     * @param id Long value representing the id, null to let the database choose it
+     * @param firstName String value representing the firstname
+     * @param lastName String value representing the lastname
+     * @param dateOfBirth Date value representing the date of birth
+     * @param email String value representing the email
+     * @param password String value representing the password
+     * @param isProMember boolean value representing the pro-membership
+     */
+    public Customer(Long id, String firstName, String lastName, Date dateOfBirth, String email, String password,
+                    boolean isProMember) {
+        this(id, firstName, lastName, dateOfBirth, email, password, isProMember, 0);
+    }
+
+    /**
+     * method derives the age from the date of birth, so it can't go stale
+     * @return int value representing the completed years since the date of birth, 0 without a date of birth
+     */
+    public int getAge() {
+        return ageOf(dateOfBirth);
+    }
+
+    /**
+     * method computes the age of someone born at the date of birth
+     * @param dateOfBirth Date value representing the date of birth, may be null
+     * @return int value representing the completed years since the date of birth, 0 without a date of birth
+     */
+    public static int ageOf(Date dateOfBirth) {
+        if (dateOfBirth == null)
+            return 0;
+        LocalDate birthday = Instant.ofEpochMilli(dateOfBirth.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+        return Period.between(birthday, LocalDate.now()).getYears();
+    }
 }
@@ -0,0 +1,122 @@
+package CustomerData.customer.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * admission control for api/v1/customer, only used if the property customer.admission.enabled is set to true
+ * (default false), without it the requests are only limited by the threads of the server. At most
+ * customer.admission.initial-limit (default 20) requests are handled at the same time, the limit is lowered while
+ * requests wait for a database connection and raised again while they don't, between customer.admission.min-limit
+ * (default 1) and customer.admission.max-limit (default 200). customer.admission.reserve (default 0.25) of the limit is
+ * kept for the GET requests matching customer.admission.cheap-paths, the paths matching customer.admission.excluded-paths
+ * (default the change feed) aren't limited. Rejected requests get 503 with a Retry-After of
+ * customer.admission.retry-after (default 1s). The limit, the admitted requests and the rejections are published as
+ * customer.admission.limit, customer.admission.in-flight and customer.admission.rejected
+ */
+@Configuration
+@ConditionalOnProperty(name = "customer.admission.enabled", havingValue = "true")
+public class CustomerAdmissionConfig {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * creates the adaptive limit of the requests handled at the same time
+     * @param initialLimit int value representing the limit at startup
+     * @param minLimit int value representing the smallest limit
+     * @param maxLimit int value representing the largest limit
+     * @param reserve double value representing the share of the limit kept for cheap requests
+     * @return CustomerAdmissionLimit shared by the filter and the meters
+     */
+    @Bean
+    CustomerAdmissionLimit customerAdmissionLimit(@Value("${customer.admission.initial-limit:20}") int initialLimit,
+                                                  @Value("${customer.admission.min-limit:1}") int minLimit,
+                                                  @Value("${customer.admission.max-limit:200}") int maxLimit,
+                                                  @Value("${customer.admission.reserve:0.25}") double reserve) {
+        return new CustomerAdmissionLimit(initialLimit, minLimit, maxLimit, BACKOFF_RATIO, reserve);
+    }
+
+    /**
+     * registers the CustomerAdmissionFilter in front of Spring Security, so shed requests aren't authenticated
+     * @param limit CustomerAdmissionLimit deciding which requests are admitted
+     * @param dataSource DataSource whose pool signals the congestion
+     * @param cheapPaths List of the Ant patterns of the GET endpoints answered from the caches or memory
+     * @param excludedPaths List of the Ant patterns of the endpoints which aren't limited
+     * @param retryAfter Duration after which a rejected client should retry
+     * @param objectMapper ObjectMapper writing the error body
+     * @param meterRegistry MeterRegistry counting the rejected requests
+     * @return FilterRegistrationBean of the filter for api/v1/customer
+     */
+    @Bean
+    FilterRegistrationBean<CustomerAdmissionFilter> customerAdmissionFilter(
+            CustomerAdmissionLimit limit, DataSource dataSource,
+            @Value("${customer.admission.cheap-paths:/api/v1/customer/get/byId/*,/api/v1/customer/get/byEmail*,"
+                    + "/api/v1/customer/get/Number*,/api/v1/customer/get/search,/api/v1/customer/get/*Statistics,"
+                    + "/api/v1/customer/get/registration/*}")
+            List<String> cheapPaths,
+            @Value("${customer.admission.excluded-paths:/api/v1/customer/get/changes}") List<String> excludedPaths,
+            @Value("${customer.admission.retry-after:1s}") Duration retryAfter,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        Counter rejected = Counter.builder("customer.admission.rejected")
+                .description("Requests answered with 503 because the admission limit was reached")
+                .register(meterRegistry);
+        CustomerAdmissionFilter filter = new CustomerAdmissionFilter(limit, () -> isCongested(dataSource), cheapPaths,
+                excludedPaths, retryAfter, objectMapper, rejected::increment);
+
+        FilterRegistrationBean<CustomerAdmissionFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/v1/customer/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        return registration;
+    }
+
+    /**
+     * registers the current limit and the admitted requests
+     * @param limit CustomerAdmissionLimit which is observed
+     * @return MeterBinder registering customer.admission.limit and customer.admission.in-flight
+     */
+    @Bean
+    MeterBinder customerAdmissionMetrics(CustomerAdmissionLimit limit) {
+        return meterRegistry -> {
+            Gauge.builder("customer.admission.limit", limit, CustomerAdmissionLimit::getLimit)
+                    .description("Requests which may be handled at the same time")
+                    .register(meterRegistry);
+            Gauge.builder("customer.admission.in-flight", limit, CustomerAdmissionLimit::getInFlight)
+                    .description("Admitted requests which are still handled")
+                    .register(meterRegistry);
+        };
+    }
+
+    /**
+     * helper method to check whether requests are waiting for a database connection,
+     * in the Hikari pool or in front of the CustomerDatabaseBulkhead
+     * @param dataSource DataSource which is or wraps a HikariDataSource
+     * @return true if at least one thread waits for a connection
+     */
+    private static boolean isCongested(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(CustomerDatabaseBulkhead.class)
+                    && dataSource.unwrap(CustomerDatabaseBulkhead.class).getQueueLength() > 0)
+                return true;
+            HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            return pool != null && pool.getThreadsAwaitingConnection() > 0;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.exception.CustomerException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * admission control in front of the CustomerController. A request over the CustomerAdmissionLimit is answered right away
+ * with 503 Service Unavailable and a Retry-After header instead of waiting in Tomcat's queue. GET requests matching
+ * the cheap paths (lookups served from the caches or memory) are admitted before the list scans and writes.
+ * An admitted request is released when its response is complete, for a streamed response when the stream ends
+ */
+public class CustomerAdmissionFilter extends OncePerRequestFilter {
+
+    private final CustomerAdmissionLimit limit;
+    private final BooleanSupplier congested;
+    private final List<String> cheapPaths;
+    private final List<String> excludedPaths;
+    private final Duration retryAfter;
+    private final ObjectMapper objectMapper;
+    private final Runnable onRejected;
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+    /**
+     * constructor to initialize the CustomerAdmissionFilter
+     * @param limit CustomerAdmissionLimit deciding which requests are admitted
+     * @param congested BooleanSupplier telling whether requests are waiting for a database connection
+     * @param cheapPaths List of the Ant patterns of the cheap GET endpoints
+     * @param excludedPaths List of the Ant patterns of the endpoints which aren't limited
+     * @param retryAfter Duration after which a rejected client should retry
+     * @param objectMapper ObjectMapper writing the error body
+     * @param onRejected Runnable called for every rejected request
+     */
+    public CustomerAdmissionFilter(CustomerAdmissionLimit limit, BooleanSupplier congested, List<String> cheapPaths,
+                                   List<String> excludedPaths, Duration retryAfter, ObjectMapper objectMapper,
+                                   Runnable onRejected) {
+        this.limit = limit;
+        this.congested = congested;
+        this.cheapPaths = cheapPaths;
+        this.excludedPaths = excludedPaths;
+        this.retryAfter = retryAfter;
+        this.objectMapper = objectMapper;
+        this.onRejected = onRejected;
+    }
+
+    /**
+     * method lets the excluded endpoints pass, like the change feed whose subscriptions stay open without using the database
+     * @param request the current request
+     * @return true if the request isn't limited
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return matches(excludedPaths, request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!limit.tryAcquire(isCheap(request))) {
+            reject(response);
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted())
+                request.getAsyncContext().addListener(new ReleasingListener(released));
+            else
+                release(released);
+        }
+    }
+
+    /**
+     * helper method to decide whether the request may use the reserved part of the limit
+     */
+    private boolean isCheap(HttpServletRequest request) {
+        return HttpMethod.resolve(request.getMethod()) == HttpMethod.GET && matches(cheapPaths, request);
+    }
+
+    /**
+     * helper method to match the path of the request against Ant patterns
+     */
+    private boolean matches(List<String> patterns, HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : patterns)
+            if (matcher.match(pattern, path))
+                return true;
+        return false;
+    }
+
+    /**
+     * helper method to answer a request which isn't admitted
+     */
+    private void reject(HttpServletResponse response) throws IOException {
+        onRejected.run();
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, retryAfter.toSeconds())));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new CustomerException("Too many requests, retry later",
+                HttpStatus.SERVICE_UNAVAILABLE, ZonedDateTime.now(ZoneId.of("Z"))));
+    }
+
+    /**
+     * helper method to release an admitted request once
+     */
+    private void release(AtomicBoolean released) {
+        if (released.compareAndSet(false, true))
+            limit.release(congested.getAsBoolean());
+    }
+
+    /**
+     * releases a request whose response is written asynchronously when it ends
+     */
+    private final class ReleasingListener implements AsyncListener {
+
+        private final AtomicBoolean released;
+
+        private ReleasingListener(AtomicBoolean released) {
+            this.released = released;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(released);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(released);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(released);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package CustomerData.customer.config;
+
+/**
+ * adaptive limit of the requests handled at the same time (AIMD). Every completed request which found requests waiting
+ * for a database connection shrinks the limit by the backoff ratio, every other request completed while at least half
+ * the limit was in use grows it by 1 / limit, about one per round of requests. Cheap requests may use the whole limit,
+ * the others only the part which isn't reserved, at least one place is kept for cheap requests. So cheap requests are
+ * still admitted when the expensive ones are shed
+ */
+public class CustomerAdmissionLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double reserve;
+
+    private double limit;   //guarded by this
+    private int inFlight;   //guarded by this
+
+    /**
+     * constructor to initialize the CustomerAdmissionLimit
+     * @param initialLimit int value representing the limit at startup
+     * @param minLimit int value representing the smallest limit
+     * @param maxLimit int value representing the largest limit
+     * @param backoffRatio double value representing the factor the limit is multiplied with on congestion
+     * @param reserve double value representing the share of the limit only cheap requests may use
+     */
+    public CustomerAdmissionLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double reserve) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.reserve = reserve;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    }
+
+    /**
+     * method admits a request if the limit isn't reached, an admitted request has to be released
+     * @param cheap boolean value, true if the request may use the reserved part of the limit
+     * @return true if the request is admitted
+     */
+    public synchronized boolean tryAcquire(boolean cheap) {
+        double expensive = Math.max(1, Math.floor(limit * (1 - reserve)));
+        if (inFlight >= (cheap ? Math.max(limit, expensive + 1) : expensive))
+            return false;
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * method releases an admitted request and adjusts the limit
+     * @param congested boolean value, true if requests were waiting for a database connection when it completed
+     */
+    public synchronized void release(boolean congested) {
+        int inFlightBefore = inFlight--;
+        if (congested)
+            limit = Math.max(minLimit, limit * backoffRatio);
+        else if (inFlightBefore * 2 >= limit)
+            limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+
+    /**
+     * @return int value representing the current limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return int value representing the number of admitted requests which weren't released yet
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,112 @@
+package CustomerData.customer.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * migrates databases which still store the age of the customers, the age is derived from the date of birth since.
+ * Only runs if customer.migration.age.enabled is set to true and the migration isn't recorded as applied in the table
+ * customer_schema_version yet. It stops without changing anything if a stored age disagrees with the date of birth,
+ * otherwise customers without a date of birth get the latest date of birth matching their stored age.
+ * The age column stays, it is only made nullable, so instances still writing the age and a rollback keep working.
+ * It is dropped by a later release once no running instance maps it.
+ * Runs after Hibernate updated the schema, before the application accepts requests
+ */
+@Slf4j
+@Component
+public class CustomerAgeMigration {
+
+    static final int VERSION = 1;
+    private static final String DESCRIPTION = "derive the age from the date of birth";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    /**
+     * constructor to initialize the CustomerAgeMigration, Dependency Injection
+     * @param jdbcTemplate JdbcTemplate to access the age column which isn't mapped anymore
+     * @param entityManagerFactory EntityManagerFactory, only required so the migration runs after the schema update
+     * @param enabled boolean value to decide whether the migration is applied (customer.migration.age.enabled)
+     */
+    public CustomerAgeMigration(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+                                @Value("${customer.migration.age.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    /**
+     * method checks the stored ages, backfills the dates of birth and makes the age column nullable
+     * if the customer table still has it and the migration wasn't applied yet
+     * @throws IllegalStateException if stored ages disagree with the date of birth, nothing is changed then
+     */
+    @PostConstruct
+    public void migrate() {
+        if (!hasAgeColumn())
+            return;
+        if (!enabled) {
+            log.warn("The customer table still has the age column, set customer.migration.age.enabled=true to migrate it");
+            return;
+        }
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS customer_schema_version (version INT NOT NULL PRIMARY KEY, " +
+                "description VARCHAR(255) NOT NULL, installed_on TIMESTAMP NOT NULL)");
+        Integer applied = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer_schema_version WHERE version = ?",
+                Integer.class, VERSION);
+        if (applied != null && applied > 0)
+            return;
+
+        LocalDate today = LocalDate.now();
+        long[] stale = new long[1];
+        jdbcTemplate.query("SELECT age, date_of_birth FROM customer WHERE date_of_birth IS NOT NULL AND age IS NOT NULL", rs -> {
+            LocalDate birthday = rs.getTimestamp("date_of_birth").toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            if (Period.between(birthday, today).getYears() != rs.getInt("age"))
+                stale[0]++;
+        });
+        if (stale[0] > 0)
+            throw new IllegalStateException(stale[0] + " stored customer ages disagree with the date of birth, " +
+                    "correct them before the age is derived from the date of birth");
+
+        List<Object[]> backfill = jdbcTemplate.query("SELECT id, age FROM customer WHERE date_of_birth IS NULL AND age IS NOT NULL",
+                (rs, i) -> new Object[]{Timestamp.valueOf(today.minusYears(rs.getInt("age")).atStartOfDay()), rs.getLong("id")});
+        jdbcTemplate.batchUpdate("UPDATE customer SET date_of_birth = ? WHERE id = ?", backfill);
+        jdbcTemplate.execute(isMySql() ? "ALTER TABLE customer MODIFY age INT NULL"
+                : "ALTER TABLE customer ALTER COLUMN age SET NULL");
+        jdbcTemplate.update("INSERT INTO customer_schema_version (version, description, installed_on) VALUES (?, ?, ?)",
+                VERSION, DESCRIPTION, new Timestamp(System.currentTimeMillis()));
+        log.info("Migrated the customer age to the date of birth: backfilled {} dates of birth, the age column is kept",
+                backfill.size());
+    }
+
+    /**
+     * helper method to check whether the customer table still has the age column
+     * @return true if the column exists
+     */
+    private boolean hasAgeColumn() {
+        return Boolean.TRUE.equals(jdbcTemplate.query("SELECT * FROM customer WHERE 1 = 0", rs -> {
+            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++)
+                if (rs.getMetaData().getColumnLabel(i).equalsIgnoreCase("age"))
+                    return true;
+            return false;
+        }));
+    }
+
+    /**
+     * helper method to check whether the database is MySQL, which changes the nullability with MODIFY
+     * @return true for MySQL
+     */
+    private boolean isMySql() {
+        return "MySQL".equals(jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+    }
+}
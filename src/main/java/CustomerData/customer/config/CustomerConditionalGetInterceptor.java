@@ -0,0 +1,52 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.service.CustomerTableVersion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * answers conditional GET requests of the read endpoints before the controller runs. Every response gets the
+ * weak ETag of the CustomerTableVersion, a request whose If-None-Match matches it is answered with
+ * 304 Not Modified without touching the customer table. The tag is weak, so the gzip-compressed and the
+ * uncompressed representation share it. While a recent write might not have reached the read
+ * replicas the responses get no tag, a body read from a replica could be older than the current version
+ */
+public class CustomerConditionalGetInterceptor implements HandlerInterceptor {
+
+    private final CustomerTableVersion customerTableVersion;
+
+    /**
+     * constructor to initialize the CustomerConditionalGetInterceptor
+     * @param customerTableVersion CustomerTableVersion the entity tags are derived from
+     */
+    public CustomerConditionalGetInterceptor(CustomerTableVersion customerTableVersion) {
+        this.customerTableVersion = customerTableVersion;
+    }
+
+    /**
+     * method sets the ETag and stops the request if the client's representation is still current.
+     * The version is read before the controller runs, a write committed in between leads to a newer body
+     * with an older tag, so the next poll loads the body again instead of missing the write
+     * @param request the current request
+     * @param response the current response
+     * @param handler the handler of the request
+     * @return false if the request was answered with 304 Not Modified
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String eTag = customerTableVersion.getETag();
+        if (customerTableVersion.isReplicated())
+            return !new ServletWebRequest(request, response).checkNotModified(eTag);
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null || !ifNoneMatch.contains(eTag))
+            return true;
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return false;
+    }
+}
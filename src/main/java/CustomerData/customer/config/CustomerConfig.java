@@ -2,20 +2,43 @@ package CustomerData.customer.config;
 
 import CustomerData.customer.repository.CustomerRepository;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
+@EnableScheduling
 public class CustomerConfig {
 
     /**
-     * creats a @Bean which refers to an object that’s managed by the Spring Inversion of Control (IoC) container
+     * creats a @Bean which refers to an object that’s managed by the Spring Inversion of Control (IoC) container.
+     * Reads and saves the whole customer table, skipped with customer.startup.fast=true
      * @param customerRepository customerRepository to manage all the http requests
      * @return CommandLineRunnerFunction to manage all the http request
      */
     @Bean
+    @ConditionalOnProperty(name = "customer.startup.fast", havingValue = "false", matchIfMissing = true)
     CommandLineRunner customerCommandLineRunner(CustomerRepository customerRepository){
-        return args -> customerRepository.saveAll(customerRepository.findAll());
+        return args -> customerRepository.saveAll(CustomerRoutingDataSource.onPrimary(customerRepository::findAll));
+    }
+
+    /**
+     * enables JDBC batching of inserts and updates unless the application.properties configure it differently,
+     * the customer ids come from a pooled sequence so Hibernate is able to batch the inserts.
+     * MySQL additionally needs rewriteBatchedStatements=true in the JDBC url to send one multi-row insert.
+     * IN lists are padded to the next power of two, so the batch endpoints reuse a few statements for any number of ids
+     * @return HibernatePropertiesCustomizer adding the batching defaults
+     */
+    @Bean
+    HibernatePropertiesCustomizer customerBatchingCustomizer(){
+        return properties -> {
+            properties.putIfAbsent("hibernate.jdbc.batch_size", "100");
+            properties.putIfAbsent("hibernate.order_inserts", "true");
+            properties.putIfAbsent("hibernate.order_updates", "true");
+            properties.putIfAbsent("hibernate.query.in_clause_parameter_padding", "true");
+        };
     }
 
 }
@@ -0,0 +1,160 @@
+package CustomerData.customer.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.security.Principal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * read replicas, only used if customer.datasource.replicas lists their JDBC urls. The spring.datasource pool is the
+ * primary, the read-only transactions of the CustomerService read from the replicas through the CustomerRoutingDataSource.
+ * A client which wrote reads from the primary for customer.datasource.read-your-writes (default 5s), the time the
+ * replicas are given to apply a write, anonymous clients are recognized by a cookie. The replicas are checked every customer.datasource.health-interval
+ * milliseconds (default 5000) and reported by the customerReplicas health indicator
+ */
+@Configuration
+@ConditionalOnProperty(name = "customer.datasource.replicas")
+public class CustomerDataSourceConfig {
+
+    private static final String CLIENT_COOKIE = "CUSTOMER_CLIENT";
+
+    /**
+     * creates the pool of the primary database from the spring.datasource properties
+     * @param properties DataSourceProperties of the primary
+     * @return HikariDataSource of the primary
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource customerPrimaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * creates the replica pools next to the primary
+     * @param primary DataSource of the primary
+     * @param replicas List of the JDBC urls of the replicas
+     * @param connectionTimeout long value representing the milliseconds to wait for a replica connection
+     * @return CustomerRoutingDataSource choosing the pool per transaction
+     * @throws SQLException if the primary DataSource isn't a Hikari pool
+     */
+    @Bean
+    CustomerRoutingDataSource customerRoutingDataSource(@Qualifier("customerPrimaryDataSource") DataSource primary,
+                                                        @Value("${customer.datasource.replicas}") List<String> replicas,
+                                                        @Value("${customer.datasource.replica-connection-timeout:1000}") long connectionTimeout)
+            throws SQLException {
+        return new CustomerRoutingDataSource(primary, replicas, connectionTimeout);
+    }
+
+    /**
+     * the DataSource used by JPA, takes the connection on the first statement when the transaction is already marked read-only
+     * @param routingDataSource CustomerRoutingDataSource choosing the pool
+     * @return DataSource wrapping the CustomerRoutingDataSource
+     */
+    @Bean
+    @Primary
+    DataSource dataSource(CustomerRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * sends the requests of a client which wrote during the last read-your-writes window to the primary.
+     * Clients are told apart by their user name, anonymous clients by their HTTP session or else by the
+     * CUSTOMER_CLIENT cookie they get with their first write. The address isn't used, clients behind one proxy
+     * or NAT would share it. An anonymous client which doesn't send the cookie back may read from a replica
+     * which didn't apply its write yet
+     * @param readYourWrites Duration after a write in which the client reads from the primary
+     * @return OncePerRequestFilter choosing the primary for recent writers
+     */
+    @Bean
+    OncePerRequestFilter customerReadYourWritesFilter(@Value("${customer.datasource.read-your-writes:5s}") Duration readYourWrites) {
+        Cache<String, Boolean> recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWrites)
+                .build();
+
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                String client = clientOf(request);
+                if (client == null && isWrite(request)) {
+                    //set before the response is committed, a failed write only costs the client primary reads
+                    String token = UUID.randomUUID().toString();
+                    Cookie cookie = new Cookie(CLIENT_COOKIE, token);
+                    cookie.setPath("/");
+                    cookie.setHttpOnly(true);
+                    cookie.setMaxAge((int) Math.max(1, readYourWrites.toSeconds()));
+                    response.addCookie(cookie);
+                    client = "client:" + token;
+                }
+                boolean primary = client != null && recentWriters.getIfPresent(client) != null
+                        && CustomerRoutingDataSource.enterPrimary();
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    if (primary)
+                        CustomerRoutingDataSource.exitPrimary();
+                    if (client != null && isWrite(request) && response.getStatus() < 400)
+                        recentWriters.put(client, Boolean.TRUE);
+                }
+            }
+
+            private String clientOf(HttpServletRequest request) {
+                Principal principal = request.getUserPrincipal();
+                if (principal != null)
+                    return "user:" + principal.getName();
+                HttpSession session = request.getSession(false);
+                if (session != null)
+                    return "session:" + session.getId();
+                Cookie cookie = WebUtils.getCookie(request, CLIENT_COOKIE);
+                return cookie != null ? "client:" + cookie.getValue() : null;
+            }
+
+            private boolean isWrite(HttpServletRequest request) {
+                HttpMethod method = HttpMethod.resolve(request.getMethod());
+                return method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS;
+            }
+        };
+    }
+
+    /**
+     * reports the state of every replica pool, the primary is reported by the db health indicator.
+     * The api stays up without replicas, so a replica which is down doesn't change the status
+     * @param routingDataSource CustomerRoutingDataSource holding the replica pools
+     * @return HealthIndicator listing the replicas
+     */
+    @Bean
+    HealthIndicator customerReplicasHealthIndicator(CustomerRoutingDataSource routingDataSource) {
+        return () -> {
+            Map<String, String> replicas = routingDataSource.getReplicaHealth();
+            return Health.up().withDetails(replicas).build();
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package CustomerData.customer.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DataSource which lets at most as many threads hold a connection as the pool has connections.
+ * Virtual threads wait on the fair semaphore, where they unmount from their carrier thread,
+ * instead of piling up inside the connection pool. Like the pool, a thread waits at most the connection timeout
+ * for a permit. The permit is returned when the connection is closed
+ */
+public class CustomerDatabaseBulkhead extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final long connectionTimeoutMillis;
+
+    /**
+     * constructor to initialize the CustomerDatabaseBulkhead
+     * @param dataSource the pooled DataSource which is wrapped
+     * @param maxConcurrentConnections int value representing the number of threads allowed to hold a connection
+     * @param connectionTimeoutMillis long value representing the milliseconds a thread waits for a permit
+     */
+    public CustomerDatabaseBulkhead(DataSource dataSource, int maxConcurrentConnections, long connectionTimeoutMillis) {
+        super(dataSource);
+        this.permits = new Semaphore(maxConcurrentConnections, true);
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        return guard(super::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        return guard(() -> super.getConnection(username, password));
+    }
+
+    /**
+     * @return int value representing the number of threads which could get a connection right now
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * @return int value representing the estimated number of threads waiting for a connection
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * helper method to wait for a permit
+     * @throws SQLTransientConnectionException if no permit is free within the connection timeout
+     * @throws SQLException if the thread is interrupted while waiting
+     */
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS))
+                throw new SQLTransientConnectionException("No database connection was free within "
+                        + connectionTimeoutMillis + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    /**
+     * helper method to get a connection whose close() returns the permit, the permit is returned
+     * right away if no connection could be obtained
+     */
+    private Connection guard(ConnectionSupplier supplier) throws SQLException {
+        Connection connection;
+        try {
+            connection = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("equals"))
+                        return proxy == args[0];
+                    if (method.getName().equals("hashCode"))
+                        return System.identityHashCode(proxy);
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true))
+                            permits.release();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,148 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.service.CustomerChangeFeed;
+import CustomerData.customer.service.CustomerEmailFilter;
+import CustomerData.customer.service.CustomerIngestion;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * instruments the api with Micrometer, the meters are scraped from /actuator/prometheus:
+ * http.server.requests per endpoint and spring.data.repository.invocations per repository method with percentile
+ * histograms, customer.datasource.pool.saturation, customer.feed.subscribers, customer.ingestion.queued,
+ * customer.email-filter.avoided and customer.exceptions.handled.
+ * The per request database work is recorded by the CustomerQueryBudgetConfig. Setting customer.metrics.enabled to false turns the meters into no-ops,
+ * together with customer.query-budget.enabled=false the instrumentation is removed to measure its overhead
+ */
+@Configuration
+public class CustomerMetricsConfig {
+
+    private static final String[] HISTOGRAMS = {"http.server.requests", "spring.data.repository.invocations"};
+
+    /**
+     * publishes percentile histograms for the endpoint and repository timers
+     * @return MeterFilter enabling the histograms
+     */
+    @Bean
+    @ConditionalOnProperty(name = "customer.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    MeterFilter customerHistogramMeterFilter() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                for (String histogram : HISTOGRAMS)
+                    if (id.getName().equals(histogram))
+                        return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+                return config;
+            }
+        };
+    }
+
+    /**
+     * turns every meter into a no-op if the metrics are disabled
+     * @return MeterFilter denying all meters
+     */
+    @Bean
+    @ConditionalOnProperty(name = "customer.metrics.enabled", havingValue = "false")
+    MeterFilter customerDisabledMeterFilter() {
+        return MeterFilter.deny();
+    }
+
+    /**
+     * registers the share of pooled connections in use, 1 means requests have to wait for a connection
+     * @param dataSource DataSource backed by a Hikari connection pool
+     * @return MeterBinder registering customer.datasource.pool.saturation
+     */
+    @Bean
+    @ConditionalOnProperty(name = "customer.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    MeterBinder customerConnectionPoolSaturation(DataSource dataSource) {
+        return meterRegistry -> Gauge.builder("customer.datasource.pool.saturation", dataSource, CustomerMetricsConfig::saturation)
+                .description("Active connections divided by the maximum pool size")
+                .register(meterRegistry);
+    }
+
+    /**
+     * registers the subscribers of the change feed and the ones disconnected because they fell behind
+     * @param customerChangeFeed CustomerChangeFeed which is observed
+     * @return MeterBinder registering customer.feed.subscribers and customer.feed.overflows
+     */
+    @Bean
+    @ConditionalOnProperty(name = "customer.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    MeterBinder customerChangeFeedMetrics(CustomerChangeFeed customerChangeFeed) {
+        return meterRegistry -> {
+            Gauge.builder("customer.feed.subscribers", customerChangeFeed, CustomerChangeFeed::getSubscribers)
+                    .description("Clients subscribed to the change feed")
+                    .register(meterRegistry);
+            FunctionCounter.builder("customer.feed.overflows", customerChangeFeed, CustomerChangeFeed::getOverflows)
+                    .description("Subscribers disconnected because they fell too far behind")
+                    .register(meterRegistry);
+        };
+    }
+
+    /**
+     * registers the registrations waiting in the queue of the write-behind mode and the ones rejected because it was full
+     * @param customerIngestion CustomerIngestion which is observed
+     * @return MeterBinder registering customer.ingestion.queued and customer.ingestion.rejected
+     */
+    @Bean
+    @ConditionalOnProperty(name = "customer.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    MeterBinder customerIngestionMetrics(CustomerIngestion customerIngestion) {
+        return meterRegistry -> {
+            Gauge.builder("customer.ingestion.queued", customerIngestion, CustomerIngestion::getQueued)
+                    .description("Registrations accepted and not stored yet")
+                    .register(meterRegistry);
+            FunctionCounter.builder("customer.ingestion.rejected", customerIngestion, CustomerIngestion::getRejected)
+                    .description("Registrations answered with 503 because the queue was full")
+                    .register(meterRegistry);
+        };
+    }
+
+    /**
+     * registers the email lookups answered by the email filter, the ones it let through without a customer and its size
+     * @param customerEmailFilter CustomerEmailFilter which is observed
+     * @return MeterBinder registering customer.email-filter.avoided, customer.email-filter.false-positives
+     * and customer.email-filter.size
+     */
+    @Bean
+    @ConditionalOnProperty(name = "customer.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    MeterBinder customerEmailFilterMetrics(CustomerEmailFilter customerEmailFilter) {
+        return meterRegistry -> {
+            FunctionCounter.builder("customer.email-filter.avoided", customerEmailFilter, CustomerEmailFilter::getAvoided)
+                    .description("Lookups of emails without a customer which didn't query the database")
+                    .register(meterRegistry);
+            FunctionCounter.builder("customer.email-filter.false-positives", customerEmailFilter, CustomerEmailFilter::getFalsePositives)
+                    .description("Lookups the filter let through which found no customer")
+                    .register(meterRegistry);
+            Gauge.builder("customer.email-filter.size", customerEmailFilter, CustomerEmailFilter::getBytes)
+                    .description("Memory of the email filter")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        };
+    }
+
+    /**
+     * helper method to read the saturation of the Hikari pool
+     * @param dataSource DataSource which is or wraps a HikariDataSource
+     * @return double value between 0 and 1, NaN if the pool isn't a Hikari pool
+     */
+    private static double saturation(DataSource dataSource) {
+        try {
+            HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            return pool == null ? 0 : (double) pool.getActiveConnections() / hikari.getMaximumPoolSize();
+        } catch (SQLException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package CustomerData.customer.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * records the CustomerRequestStatistics of every request as customer.rows.loaded, customer.statements and
+ * customer.jdbc.time and warns about requests exceeding customer.query-budget.statements or
+ * customer.query-budget.rows, which typically load the whole table. Those requests are counted as
+ * customer.query-budget.exceeded. Disabled by setting customer.query-budget.enabled to false
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "customer.query-budget.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerQueryBudgetConfig {
+
+    /**
+     * registers the CustomerStatementListener with Hibernate
+     * @return HibernatePropertiesCustomizer adding the listener
+     */
+    @Bean
+    HibernatePropertiesCustomizer customerRequestStatisticsCustomizer() {
+        return properties -> properties.put("hibernate.session.events.auto", CustomerStatementListener.class.getName());
+    }
+
+    /**
+     * adds the CustomerRowsLoadedInterceptor to the repository proxies
+     * @return BeanPostProcessor customizing the repository factories before they create the repositories
+     */
+    @Bean
+    static BeanPostProcessor customerRowsLoadedPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean)
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(new CustomerRowsLoadedInterceptor())));
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * records the statistics of each request, tagged with the endpoint
+     * @param meterRegistry MeterRegistry the meters are registered at
+     * @param maxStatements long value representing the statements a request may execute
+     * @param maxRows long value representing the rows a request may load
+     * @return OncePerRequestFilter recording the statistics
+     */
+    @Bean
+    OncePerRequestFilter customerRequestStatisticsFilter(MeterRegistry meterRegistry,
+                                                         @Value("${customer.query-budget.statements:10}") long maxStatements,
+                                                         @Value("${customer.query-budget.rows:1000}") long maxRows) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                boolean started = CustomerRequestStatistics.start();
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    if (started)
+                        record(request, CustomerRequestStatistics.stop());
+                }
+            }
+
+            private void record(HttpServletRequest request, CustomerRequestStatistics statistics) {
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+
+                DistributionSummary.builder("customer.rows.loaded")
+                        .description("Customers loaded from the database per request")
+                        .baseUnit("rows")
+                        .tag("uri", uri)
+                        .register(meterRegistry)
+                        .record(statistics.getRowsLoaded());
+                DistributionSummary.builder("customer.statements")
+                        .description("JDBC statements executed per request")
+                        .tag("uri", uri)
+                        .register(meterRegistry)
+                        .record(statistics.getStatements());
+                Timer.builder("customer.jdbc.time")
+                        .description("Time spent executing JDBC statements per request")
+                        .tag("uri", uri)
+                        .register(meterRegistry)
+                        .record(statistics.getJdbcNanos(), TimeUnit.NANOSECONDS);
+
+                if (statistics.getStatements() > maxStatements || statistics.getRowsLoaded() > maxRows) {
+                    log.warn("{} {} exceeded the query budget of {} statements and {} rows: {}",
+                            request.getMethod(), request.getRequestURI(), maxStatements, maxRows, statistics);
+                    meterRegistry.counter("customer.query-budget.exceeded", "uri", uri).increment();
+                }
+            }
+        };
+    }
+}
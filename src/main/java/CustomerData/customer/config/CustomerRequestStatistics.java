@@ -0,0 +1,78 @@
+package CustomerData.customer.config;
+
+/**
+ * database work done on behalf of one request: the executed JDBC statements, the rows returned by the
+ * repository and the time spent executing statements. The statistics are bound to the thread handling the request,
+ * nothing is recorded on threads without started statistics
+ */
+public class CustomerRequestStatistics {
+
+    private static final ThreadLocal<CustomerRequestStatistics> CURRENT = new ThreadLocal<>();
+
+    private long statements;
+    private long rowsLoaded;
+    private long jdbcNanos;
+
+    /**
+     * method starts recording on the current thread unless it already records
+     * @return true if the statistics were started by this call and have to be stopped by the caller
+     */
+    public static boolean start() {
+        if (CURRENT.get() != null)
+            return false;
+        CURRENT.set(new CustomerRequestStatistics());
+        return true;
+    }
+
+    /**
+     * method stops recording on the current thread
+     * @return the recorded statistics, null if the thread didn't record
+     */
+    public static CustomerRequestStatistics stop() {
+        CustomerRequestStatistics statistics = CURRENT.get();
+        CURRENT.remove();
+        return statistics;
+    }
+
+    /**
+     * @return the statistics the current thread records to, null if it doesn't record
+     */
+    public static CustomerRequestStatistics current() {
+        return CURRENT.get();
+    }
+
+    void statementExecuted(long nanos) {
+        statements++;
+        jdbcNanos += nanos;
+    }
+
+    void rowsLoaded(long rows) {
+        rowsLoaded += rows;
+    }
+
+    /**
+     * @return long value representing the number of executed statements, a JDBC batch counts as one
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return long value representing the number of rows returned by the repository, entities or projections
+     */
+    public long getRowsLoaded() {
+        return rowsLoaded;
+    }
+
+    /**
+     * @return long value representing the nanoseconds spent executing statements
+     */
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    @Override
+    public String toString() {
+        return statements + " statements, " + rowsLoaded + " rows loaded, " + jdbcNanos / 1_000_000 + " ms in JDBC";
+    }
+}
@@ -0,0 +1,197 @@
+package CustomerData.customer.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * DataSource sending the connections of read-only transactions to the replica pools, round robin over the healthy
+ * ones, and everything else to the primary. It has to be wrapped in a LazyConnectionDataSourceProxy, otherwise the
+ * connection is taken before the transaction is marked read-only. A replica which fails to hand out a connection is
+ * skipped until the next health check finds it valid again, without a healthy replica the primary serves the reads.
+ * Reads which have to see the latest writes are run with {@link #onPrimary(Supplier)}
+ */
+@Slf4j
+public class CustomerRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * constructor to initialize the CustomerRoutingDataSource, the replica pools are configured like the primary pool
+     * @param primary the pooled DataSource of the primary database
+     * @param replicaUrls List of the JDBC urls of the replicas
+     * @param connectionTimeout long value representing the milliseconds to wait for a replica connection
+     *                          before the replica is skipped
+     * @throws SQLException if the primary DataSource isn't a Hikari pool
+     */
+    public CustomerRoutingDataSource(DataSource primary, List<String> replicaUrls, long connectionTimeout) throws SQLException {
+        this.primary = primary;
+        HikariDataSource primaryPool = primary.unwrap(HikariDataSource.class);
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            primaryPool.copyStateTo(config);
+            config.setJdbcUrl(replicaUrls.get(i));
+            config.setPoolName("customer-replica-" + (i + 1));
+            config.setReadOnly(true);
+            config.setConnectionTimeout(connectionTimeout);
+            config.setInitializationFailTimeout(-1);    //a replica which is down must not stop the startup
+            replicas.add(new Replica(new HikariDataSource(config)));
+        }
+    }
+
+    /**
+     * method runs the action with the connections of the calling thread taken from the primary,
+     * for reads which must not miss a recent write
+     * @param action the action accessing the database
+     * @return the result of the action
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        boolean entered = enterPrimary();
+        try {
+            return action.get();
+        } finally {
+            if (entered)
+                exitPrimary();
+        }
+    }
+
+    /**
+     * method sends the connections of the calling thread to the primary until {@link #exitPrimary()} is called
+     * @return true if the thread wasn't sent to the primary before and has to call exitPrimary
+     */
+    static boolean enterPrimary() {
+        if (PRIMARY.get() != null)
+            return false;
+        PRIMARY.set(Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * method lets the calling thread read from the replicas again
+     */
+    static void exitPrimary() {
+        PRIMARY.remove();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!isReplicaRead())
+            return primary.getConnection();
+
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (!replica.healthy)
+                continue;
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.healthy = false;
+                log.warn("Replica {} is unavailable, reading from the other pools: {}", replica.dataSource.getPoolName(), e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pools of the CustomerRoutingDataSource use the configured credentials");
+    }
+
+    /**
+     * method validates one connection of each replica pool and takes the valid ones back into the rotation
+     */
+    @Scheduled(fixedDelayString = "${customer.datasource.health-interval:5000}",
+            initialDelayString = "${customer.datasource.health-interval:5000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy = isValid(replica.dataSource);
+            if (healthy != replica.healthy)
+                log.info("Replica {} is {}", replica.dataSource.getPoolName(), healthy ? "available again" : "unavailable");
+            replica.healthy = healthy;
+        }
+    }
+
+    /**
+     * method returns the state of the replica pools as of the last health check or failed connection
+     * @return Map with UP or DOWN per pool name
+     */
+    public Map<String, String> getReplicaHealth() {
+        Map<String, String> health = new LinkedHashMap<>();
+        for (Replica replica : replicas)
+            health.put(replica.dataSource.getPoolName(), replica.healthy ? "UP" : "DOWN");
+        return health;
+    }
+
+    /**
+     * unwraps to the primary pool, so pool metrics and the bulkhead see the primary
+     */
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        return type.isInstance(this) ? type.cast(this) : primary.unwrap(type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) throws SQLException {
+        return type.isInstance(this) || primary.isWrapperFor(type);
+    }
+
+    /**
+     * method closes the replica pools, the primary pool is closed by its owner
+     */
+    @Override
+    public void close() {
+        for (Replica replica : replicas)
+            replica.dataSource.close();
+    }
+
+    /**
+     * helper method to decide whether the connection may come from a replica
+     * @return true inside a read-only transaction which isn't required to read from the primary
+     */
+    private static boolean isReplicaRead() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && PRIMARY.get() == null;
+    }
+
+    /**
+     * helper method to check one connection of a pool
+     */
+    private static boolean isValid(HikariDataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * pool of one replica and its state
+     */
+    private static final class Replica {
+
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
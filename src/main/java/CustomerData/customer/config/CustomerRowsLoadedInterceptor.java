@@ -0,0 +1,41 @@
+package CustomerData.customer.config;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * advice of the repository proxies counting the rows returned by the repository queries into the
+ * CustomerRequestStatistics of the current thread. Entities and projections are counted alike,
+ * save methods and counts are not
+ */
+public class CustomerRowsLoadedInterceptor implements MethodInterceptor {
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+
+        CustomerRequestStatistics statistics = CustomerRequestStatistics.current();
+        if (statistics != null && !invocation.getMethod().getName().startsWith("save"))
+            statistics.rowsLoaded(rows(result));
+
+        return result;
+    }
+
+    /**
+     * helper method to count the rows of a repository result
+     * @param result the value returned by the repository method
+     * @return long value representing the number of returned rows
+     */
+    private static long rows(Object result) {
+        if (result instanceof Collection<?> collection)
+            return collection.size();
+        if (result instanceof Optional<?> optional)
+            return optional.isPresent() ? 1 : 0;
+        if (result == null || result instanceof Number || result instanceof Boolean || result instanceof AutoCloseable)
+            return 0;       //counts, exists checks and streams, which are counted by their consumer
+        return 1;
+    }
+}
@@ -0,0 +1,61 @@
+package CustomerData.customer.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * moves the customer_sequence behind the ids which were generated with IDENTITY before the ids came from the sequence.
+ * A new sequence starts at 1 and would hand out the ids of existing customers, the inserts would fail until it passed them.
+ * The pooled optimizer of Hibernate uses the ids (value - 49 .. value) of every value of the sequence, so the next value
+ * is set to max(id) + 50. MySQL emulates the sequence with the table customer_sequence, H2 has real sequences.
+ * Runs after Hibernate updated the schema, before the application accepts requests, and never moves the sequence back
+ */
+@Slf4j
+@Component
+public class CustomerSequenceMigration {
+
+    //allocationSize of the customer_sequence generator of Customer
+    static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * constructor to initialize the CustomerSequenceMigration, Dependency Injection
+     * @param jdbcTemplate JdbcTemplate to read the largest id and move the sequence
+     * @param entityManagerFactory EntityManagerFactory, only required so the migration runs after the schema update
+     */
+    public CustomerSequenceMigration(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * method seeds the customer_sequence from the largest existing id if the sequence is behind it
+     */
+    @PostConstruct
+    public void migrate() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM customer", Long.class);
+        if (maxId == null)
+            return;
+
+        long next = maxId + ALLOCATION_SIZE;
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if ("MySQL".equals(database)) {
+            if (jdbcTemplate.update("UPDATE customer_sequence SET next_val = ? WHERE next_val < ?", next, next) > 0)
+                log.info("Seeded the customer_sequence with {} from the largest customer id {}", next, maxId);
+        } else if ("H2".equals(database)) {
+            Long current = jdbcTemplate.queryForObject("SELECT CURRENT_VALUE + INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES " +
+                    "WHERE SEQUENCE_NAME = 'CUSTOMER_SEQUENCE'", Long.class);
+            if (current != null && current < next) {
+                jdbcTemplate.execute("ALTER SEQUENCE customer_sequence RESTART WITH " + next);
+                log.info("Seeded the customer_sequence with {} from the largest customer id {}", next, maxId);
+            }
+        } else {
+            log.warn("The customer_sequence isn't seeded on {}, its next value has to be at least {}", database, next);
+        }
+    }
+}
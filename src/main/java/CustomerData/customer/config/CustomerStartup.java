@@ -0,0 +1,117 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.dto.CustomerPage;
+import CustomerData.customer.dto.CustomerSummary;
+import CustomerData.customer.service.CustomerService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * reports the time from the start of the JVM until the application accepts traffic as customer.startup.time-to-ready.
+ * If customer.startup.warmup is set, the application warms up for at most that long before it reports being ready:
+ * the first customer.startup.warmup-customers (default 1000) customers are loaded into the cache and the
+ * hot read paths are run and serialized until the time is up
+ */
+@Slf4j
+@Component
+public class CustomerStartup {
+
+    private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Duration warmup;
+    private final int warmupCustomers;
+    private volatile boolean ready;
+
+    /**
+     * constructor to initialize the CustomerStartup, Dependency Injection
+     * @param customerService CustomerService whose hot paths are warmed up
+     * @param objectMapper ObjectMapper serializing the responses like the controller
+     * @param meterRegistry MeterRegistry the time to ready is registered with
+     * @param warmup Duration of the warmup, zero to skip it
+     * @param warmupCustomers int value representing the number of customers loaded into the cache
+     */
+    public CustomerStartup(CustomerService customerService, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           @Value("${customer.startup.warmup:0s}") Duration warmup,
+                           @Value("${customer.startup.warmup-customers:1000}") int warmupCustomers) {
+        this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.warmup = warmup;
+        this.warmupCustomers = warmupCustomers;
+    }
+
+    /**
+     * method warms up after the other startup listeners, Spring Boot reports the application ready when it returns
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void warmUp() {
+        if (warmup.isZero() || warmup.isNegative())
+            return;
+
+        long start = System.nanoTime();
+        long deadline = start + warmup.toNanos();
+        List<Long> ids = new ArrayList<>();
+        int rounds = 0;
+        try {
+            String cursor = null;
+            do {
+                CustomerPage<CustomerSummary> page = customerService.findAllPage(cursor, null);
+                for (CustomerSummary customer : page.getCustomers())
+                    if (ids.size() < warmupCustomers)
+                        ids.add(customer.getId());
+                cursor = page.getNextCursor();
+            } while (cursor != null && ids.size() < warmupCustomers && System.nanoTime() < deadline);
+
+            for (int i = 0; i < ids.size() && System.nanoTime() < deadline; i++)
+                customerService.findById(ids.get(i));
+
+            for (; System.nanoTime() < deadline; rounds++) {
+                objectMapper.writeValueAsBytes(customerService.findAllPage(null, null));
+                objectMapper.writeValueAsBytes(customerService.getNumberOfCustomers());
+                objectMapper.writeValueAsBytes(customerService.search("a", null));
+                if (!ids.isEmpty())
+                    objectMapper.writeValueAsBytes(customerService.findById(ids.get(rounds % ids.size())));
+            }
+        } catch (RuntimeException | JsonProcessingException e) {
+            log.warn("Stopped the warmup: {}", e.getMessage());
+        }
+        log.info("Warmed up in {} ms: {} customers loaded into the cache, {} rounds over the read paths",
+                (System.nanoTime() - start) / 1_000_000, ids.size(), rounds);
+    }
+
+    /**
+     * method registers the time to ready when the application accepts traffic for the first time
+     * @param event the change of the readiness state
+     */
+    @EventListener
+    public void onReadinessChanged(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC || ready)
+            return;
+
+        ready = true;
+        long timeToReady = ManagementFactory.getRuntimeMXBean().getUptime();
+        TimeGauge.builder("customer.startup.time-to-ready", () -> timeToReady, TimeUnit.MILLISECONDS)
+                .description("Time from the start of the JVM until the application accepted traffic")
+                .register(meterRegistry);
+        log.info("Accepting traffic {} ms after the JVM started", timeToReady);
+    }
+}
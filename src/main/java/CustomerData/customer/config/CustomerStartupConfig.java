@@ -0,0 +1,43 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.service.CustomerAggregates;
+import CustomerData.customer.service.CustomerEmailFilter;
+import CustomerData.customer.service.CustomerIngestion;
+import CustomerData.customer.service.CustomerCounter;
+import org.springframework.boot.LazyInitializationBeanFactoryPostProcessor;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * fast startup, turned on with customer.startup.fast=true. The customer table isn't read and saved again at startup,
+ * and the beans are created on first use instead of at startup, like spring.main.lazy-initialization=true.
+ * The schema migration, the scheduled jobs and the web server stay eager, so the first request finds a migrated
+ * database. The first requests are slower until their beans exist, customer.startup.warmup creates them before
+ * the application reports being ready
+ */
+@Configuration
+@ConditionalOnProperty(name = "customer.startup.fast", havingValue = "true")
+public class CustomerStartupConfig {
+
+    /**
+     * marks the bean definitions lazy which aren't excluded
+     * @return LazyInitializationBeanFactoryPostProcessor of Spring Boot
+     */
+    @Bean
+    static LazyInitializationBeanFactoryPostProcessor customerLazyInitialization() {
+        return new LazyInitializationBeanFactoryPostProcessor();
+    }
+
+    /**
+     * keeps the beans eager which have to run before the first request or on a schedule
+     * @return LazyInitializationExcludeFilter excluding the schema migrations and the scheduled beans
+     */
+    @Bean
+    static LazyInitializationExcludeFilter customerEagerBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(CustomerAgeMigration.class, CustomerSequenceMigration.class,
+                CustomerCounter.class, CustomerAggregates.class, CustomerEmailFilter.class, CustomerIngestion.class,
+                CustomerRoutingDataSource.class);
+    }
+}
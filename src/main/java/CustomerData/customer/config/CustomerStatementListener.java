@@ -0,0 +1,41 @@
+package CustomerData.customer.config;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Hibernate session listener counting the executed statements and their duration into the
+ * CustomerRequestStatistics of the current thread. Hibernate creates one listener per session
+ */
+public class CustomerStatementListener extends BaseSessionEventListener {
+
+    private long start;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        executed();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        executed();
+    }
+
+    /**
+     * helper method to record the statement which just finished
+     */
+    private void executed() {
+        CustomerRequestStatistics statistics = CustomerRequestStatistics.current();
+        if (statistics != null)
+            statistics.statementExecuted(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,67 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.service.CustomerTableVersion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * conditional GET and response compression for the read endpoints. The responses of api/v1/customer/get/** carry
+ * a weak ETag and are answered with 304 Not Modified if it didn't change, the cache and search statistics and the queued
+ * registrations are excluded because they change without a write, the change feed because it is a stream. JSON, NDJSON and CSV responses of
+ * at least customer.compression.min-size (default 2KB) are gzip-compressed unless server.compression.enabled is configured
+ */
+@Configuration
+public class CustomerWebConfig implements WebMvcConfigurer {
+
+    private static final String[] MIME_TYPES = {"application/json", "application/x-ndjson", "text/csv"};
+
+    private final CustomerTableVersion customerTableVersion;
+
+    /**
+     * constructor to initialize the CustomerWebConfig, Dependency Injection
+     * @param customerTableVersion CustomerTableVersion the entity tags are derived from
+     */
+    public CustomerWebConfig(CustomerTableVersion customerTableVersion) {
+        this.customerTableVersion = customerTableVersion;
+    }
+
+    /**
+     * registers the CustomerConditionalGetInterceptor for the read endpoints
+     * @param registry InterceptorRegistry of Spring MVC
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new CustomerConditionalGetInterceptor(customerTableVersion))
+                .addPathPatterns("/api/v1/customer/get/**")
+                .excludePathPatterns("/api/v1/customer/get/cacheStatistics", "/api/v1/customer/get/searchStatistics",
+                        "/api/v1/customer/get/changes", "/api/v1/customer/get/registration/*");
+    }
+
+    /**
+     * enables the gzip compression of the responses if it isn't configured with the server.compression properties
+     * @param environment Environment to check for the server.compression properties
+     * @param minSize DataSize value representing the smallest response which is compressed
+     * @return WebServerFactoryCustomizer enabling the compression
+     */
+    @Bean
+    WebServerFactoryCustomizer<ConfigurableServletWebServerFactory> customerCompressionCustomizer(
+            Environment environment, @Value("${customer.compression.min-size:2KB}") DataSize minSize) {
+        return factory -> {
+            if (environment.containsProperty("server.compression.enabled"))
+                return;
+            Compression compression = new Compression();
+            compression.setEnabled(true);
+            compression.setMimeTypes(MIME_TYPES);
+            compression.setMinResponseSize(minSize);
+            factory.setCompression(compression);
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package CustomerData.customer.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * runs the request handling, and with it every CustomerService call, on virtual threads if
+ * customer.virtual-threads.enabled is set to true and the application runs on JDK 21 or newer.
+ * The database access is bounded by a CustomerDatabaseBulkhead sized to the connection pool
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "customer.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    /**
+     * method to check whether the running JDK supports virtual threads
+     * @return true if the JDK is version 21 or newer
+     */
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * replaces the Tomcat request thread pool with one virtual thread per request
+     * @return TomcatProtocolHandlerCustomizer setting the executor, does nothing before JDK 21
+     */
+    @Bean
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        if (!isSupported()) {
+            log.warn("customer.virtual-threads.enabled is set but JDK {} has no virtual threads, using platform threads",
+                    Runtime.version().feature());
+            return protocolHandler -> { };
+        }
+
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * wraps the DataSource in a CustomerDatabaseBulkhead with one permit per pooled connection,
+     * which waits for a permit as long as the pool waits for a connection
+     * @return BeanPostProcessor wrapping the DataSource, does nothing before JDK 21
+     */
+    @Bean
+    static BeanPostProcessor customerDatabaseBulkheadPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!isSupported() || !(bean instanceof HikariDataSource hikari))
+                    return bean;
+
+                log.info("Bounding database access of virtual threads to {} connections", hikari.getMaximumPoolSize());
+                return new CustomerDatabaseBulkhead(hikari, hikari.getMaximumPoolSize(), hikari.getConnectionTimeout());
+            }
+        };
+    }
+
+    /**
+     * helper method to create the virtual thread executor, looked up reflectively because the
+     * project is compiled for Java 17
+     * @return ExecutorService starting a new virtual thread per task
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available", e);
+        }
+    }
+}
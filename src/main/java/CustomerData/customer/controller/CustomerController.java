@@ -1,17 +1,51 @@
 package CustomerData.customer.controller;
 
 import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerBatch;
+import CustomerData.customer.dto.CustomerCriteria;
+import CustomerData.customer.dto.CustomerDeleteResult;
+import CustomerData.customer.dto.CustomerImportResult;
+import CustomerData.customer.dto.CustomerPage;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.dto.CustomerRegistration;
+import CustomerData.customer.dto.CustomerStatistics;
+import CustomerData.customer.dto.CustomerSuggestion;
+import CustomerData.customer.dto.CustomerSummary;
 import CustomerData.customer.repository.CustomerRepository;
+import CustomerData.customer.service.CustomerCache;
+import CustomerData.customer.service.CustomerChangeFeed;
+import CustomerData.customer.service.CustomerExporter;
+import CustomerData.customer.service.CustomerImporter;
+import CustomerData.customer.service.CustomerIngestion;
+import CustomerData.customer.service.CustomerSearchIndex;
 import CustomerData.customer.service.CustomerService;
 import CustomerData.customer.exception.CustomerAlreadyExistingException;
+import CustomerData.customer.exception.CustomerBatchException;
+import CustomerData.customer.exception.CustomerCursorException;
+import CustomerData.customer.exception.CustomerImportException;
+import CustomerData.customer.exception.CustomerIngestionException;
+import CustomerData.customer.exception.CustomerIngestionFullException;
 import CustomerData.customer.exception.CustomerNotFoundException;
 import CustomerData.customer.exception.CustomerPasswordTooWeakException;
 import CustomerData.customer.exception.CustomerProMemberException;
+import CustomerData.customer.exception.CustomerSearchException;
+import CustomerData.customer.exception.CustomerVersionConflictException;
+import CustomerData.customer.exception.CustomerVersionRequiredException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("api/v1/customer/")
@@ -19,18 +53,42 @@ public class CustomerController {
 
     private final CustomerService customerService;
     private final CustomerRepository customerRepository;  //dependency injection
+    private final CustomerExporter customerExporter;
+    private final CustomerImporter customerImporter;
+    private final CustomerCache customerCache;
+    private final CustomerSearchIndex customerSearchIndex;
+    private final CustomerChangeFeed customerChangeFeed;
+    private final CustomerIngestion customerIngestion;
 
     /**
      * constructor to initialize customerService and customerRepository
      * @param customerService parameter from type CustomerService to initialize customerService
      * @param customerRepository parameter from type CustomerRepository to initialize
      *                           customerRepository
+     * @param customerExporter parameter from type CustomerExporter to initialize customerExporter
+     * @param customerImporter parameter from type CustomerImporter to initialize customerImporter
+     * @param customerCache parameter from type CustomerCache to initialize customerCache
+     * @param customerSearchIndex parameter from type CustomerSearchIndex to initialize customerSearchIndex
+     * @param customerChangeFeed parameter from type CustomerChangeFeed to initialize customerChangeFeed
+     * @param customerIngestion parameter from type CustomerIngestion to initialize customerIngestion
      */
     @Autowired
     public CustomerController(CustomerService customerService,
-                              CustomerRepository customerRepository) {
+                              CustomerRepository customerRepository,
+                              CustomerExporter customerExporter,
+                              CustomerImporter customerImporter,
+                              CustomerCache customerCache,
+                              CustomerSearchIndex customerSearchIndex,
+                              CustomerChangeFeed customerChangeFeed,
+                              CustomerIngestion customerIngestion) {
         this.customerService = customerService;
         this.customerRepository = customerRepository;
+        this.customerExporter = customerExporter;
+        this.customerImporter = customerImporter;
+        this.customerCache = customerCache;
+        this.customerSearchIndex = customerSearchIndex;
+        this.customerChangeFeed = customerChangeFeed;
+        this.customerIngestion = customerIngestion;
     }
 
     /**
@@ -38,10 +96,52 @@ public class CustomerController {
      * @return List of all existing customers
      */
     @GetMapping("get/all")
-    List<Customer> findAllCustomers(){
+    List<CustomerSummary> findAllCustomers(){
         return customerService.findAll();
     }
 
+    /**
+     * method streams all existing customers as NDJSON (one JSON object per line) or CSV,
+     * the customers are written while they are read from the db
+     * @param format Format of the export, NDJSON or CSV
+     * @return streamed response body with the exported customers
+     */
+    @GetMapping("get/export")
+    ResponseEntity<StreamingResponseBody> exportCustomers(@RequestParam(defaultValue = "NDJSON") CustomerExporter.Format format) {
+        MediaType mediaType = format == CustomerExporter.Format.CSV
+                ? new MediaType("text", "csv")
+                : new MediaType("application", "x-ndjson");
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .body(out -> customerExporter.export(format, out));
+    }
+
+    /**
+     * method streams the committed writes as Server-Sent Events, for clients which keep a copy of the customers
+     * up to date instead of polling get/all. A new client loads all customers after subscribing
+     * @param lastEventId String value representing the id of the last event the client received, empty for a new client
+     * @param lastEventIdParam the same for clients which can't set the Last-Event-ID header
+     * @return SseEmitter sending the changes the client missed and the new ones
+     */
+    @GetMapping(value = "get/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                             @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        return customerChangeFeed.subscribe(lastEventId != null ? lastEventId : lastEventIdParam);
+    }
+
+    /**
+     * method to get one page of all existing customers ordered by id
+     * @param cursor String value representing the nextCursor of the previous page, empty for the first page
+     * @param size Integer value representing the page size, empty for the default page size
+     * @return CustomerPage filled with the customers and the cursor of the next page
+     * @throws CustomerCursorException if the cursor is invalid
+     */
+    @GetMapping("get/all/page")
+    CustomerPage<CustomerSummary> findAllCustomersPage(@RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) Integer size) throws CustomerCursorException {
+        return customerService.findAllPage(cursor, size);
+    }
+
     /**
      * method to get a specific customer by id
      * @param id the customer's id
@@ -53,6 +153,44 @@ public class CustomerController {
         return customerService.findById(id);
     }
 
+    /**
+     * method gets many customers by id with one query, for clients which would otherwise call get/byId in a loop
+     * @param ids List of the customers' ids, comma-separated, at most customer.batch.max-size (default 1000)
+     * @return CustomerBatch filled with the found customers and the ids which weren't found
+     * @throws CustomerBatchException if too many ids are requested
+     */
+    @GetMapping("get/byIds")
+    CustomerBatch findCustomersByIds(@RequestParam List<Long> ids) throws CustomerBatchException {
+        return customerService.findByIds(ids);
+    }
+
+    /**
+     * method finds the customers whose first name, last name or email starts with the prefix, ignoring the case
+     * @param prefix String value representing the typed prefix
+     * @param limit Integer value representing the maximum number of results, 10 if not set, at most 100
+     * @return List filled with the suggestions for the type-ahead, empty if nothing matches
+     */
+    @GetMapping("get/search")
+    List<CustomerSuggestion> search(@RequestParam String prefix, @RequestParam(required = false) Integer limit) {
+        return customerService.search(prefix, limit);
+    }
+
+    /**
+     * method finds the customers matching any mix of name, email, age range, date of birth range and pro-membership
+     * with one query, instead of intersecting the results of the single-criterion endpoints
+     * @param criteria CustomerCriteria bound from the parameters firstName, lastName, email, minAge, maxAge,
+     *                 bornFrom, bornTo (yyyy-MM-dd, inclusive) and proMember
+     * @param sort Sort bound from the sort parameters, by id, firstName, lastName, dateOfBirth or email
+     * @param limit Integer value representing the maximum number of results, empty for the default page size
+     * @return List filled with the matching customers, empty if no customer matches
+     * @throws CustomerSearchException if the sort names another property
+     */
+    @GetMapping("get/byCriteria")
+    List<CustomerSummary> findByCriteria(CustomerCriteria criteria, Sort sort,
+                                         @RequestParam(required = false) Integer limit) throws CustomerSearchException {
+        return customerService.findByCriteria(criteria, sort, limit);
+    }
+
     /**
      * method to find all customers with the specific input name
      * @param firstName String value representing the customers' firstname
@@ -61,7 +199,7 @@ public class CustomerController {
      * @throws CustomerNotFoundException if there is no customer with this name
      */
     @GetMapping("get/byName")
-    List<Customer> findByName(@RequestParam(required = false) String firstName,
+    List<CustomerSummary> findByName(@RequestParam(required = false) String firstName,
                               @RequestParam(required = false) String lastName) throws CustomerNotFoundException {
         return customerService.findByName(firstName, lastName);
     }
@@ -82,7 +220,7 @@ public class CustomerController {
      * @return list filled with customers sorted bei der age (the oldest first)
      */
     @GetMapping("get/sortedByAgeOldestFirst")
-    List<Customer> sortByAgeOldest(){
+    List<CustomerSummary> sortByAgeOldest(){
         return customerService.sortByDob(true);
     }
 
@@ -91,10 +229,36 @@ public class CustomerController {
      * @return list filled with customers sorted bei der age (the youngest first)
      */
     @GetMapping("get/SortedByAgeYoungestFirst")
-    List<Customer> sortByAgeYoungest(){
+    List<CustomerSummary> sortByAgeYoungest(){
         return customerService.sortByDob(false);
     }
 
+    /**
+     * method returns one page of the customers sorted by their age (the oldest first)
+     * @param cursor String value representing the nextCursor of the previous page, empty for the first page
+     * @param size Integer value representing the page size, empty for the default page size
+     * @return CustomerPage filled with the customers and the cursor of the next page
+     * @throws CustomerCursorException if the cursor is invalid
+     */
+    @GetMapping("get/sortedByAgeOldestFirst/page")
+    CustomerPage<CustomerSummary> sortByAgeOldestPage(@RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer size) throws CustomerCursorException {
+        return customerService.sortByDobPage(true, cursor, size);
+    }
+
+    /**
+     * method returns one page of the customers sorted by their age (the youngest first)
+     * @param cursor String value representing the nextCursor of the previous page, empty for the first page
+     * @param size Integer value representing the page size, empty for the default page size
+     * @return CustomerPage filled with the customers and the cursor of the next page
+     * @throws CustomerCursorException if the cursor is invalid
+     */
+    @GetMapping("get/SortedByAgeYoungestFirst/page")
+    CustomerPage<CustomerSummary> sortByAgeYoungestPage(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer size) throws CustomerCursorException {
+        return customerService.sortByDobPage(false, cursor, size);
+    }
+
     /**
      * method finds all customers with the associated input age
      * @param age int value representing the customers' age
@@ -102,17 +266,29 @@ public class CustomerController {
      * @throws CustomerNotFoundException if there is no customer with the input age
      */
     @GetMapping("get/byAge/{age}")
-    List<Customer> findByAge(@PathVariable int age) throws CustomerNotFoundException {
+    List<CustomerSummary> findByAge(@PathVariable int age) throws CustomerNotFoundException {
         return customerService.findByAge(age);
     }
 
+    /**
+     * method finds all customers whose age lies in the range
+     * @param minAge int value representing the minimum age (inclusive)
+     * @param maxAge int value representing the maximum age (inclusive)
+     * @return List filled with all customers who are between {@param minAge} and {@param maxAge} years old
+     * @throws CustomerNotFoundException if there is no customer in the age range
+     */
+    @GetMapping("get/byAgeRange")
+    List<CustomerSummary> findByAgeRange(@RequestParam int minAge, @RequestParam int maxAge) throws CustomerNotFoundException {
+        return customerService.findByAgeRange(minAge, maxAge);
+    }
+
     /**
      * method finds all customers who have a pro-membership
      * @return List filled with all pro-member customers
      * @throws CustomerProMemberException if there is no customer with a pro-membership
      */
     @GetMapping("get/findProMembers")
-    List<Customer> findAllProMembers() throws CustomerProMemberException {
+    List<CustomerSummary> findAllProMembers() throws CustomerProMemberException {
         return customerService.findAllProMembers();
     }
 
@@ -122,7 +298,7 @@ public class CustomerController {
      * @throws CustomerProMemberException if there is no customer without a pro-membership
      */
     @GetMapping("get/findNonProMembers")
-    List<Customer> findAllNonProMembers() throws CustomerProMemberException {
+    List<CustomerSummary> findAllNonProMembers() throws CustomerProMemberException {
         return customerService.findAllNonProMembers();
     }
 
@@ -133,7 +309,7 @@ public class CustomerController {
      * @throws CustomerNotFoundException if there is no customer with this date of birth
      */
     @GetMapping("get/findByDob/{dob}")
-    List<Customer> findByDob(@PathVariable Date dob) throws CustomerNotFoundException {
+    List<CustomerSummary> findByDob(@PathVariable Date dob) throws CustomerNotFoundException {
         return customerService.findByDob(dob);
     }
 
@@ -164,13 +340,55 @@ public class CustomerController {
         return customerService.getNumberOfNonProMembers();
     }
 
+    /**
+     * method returns the age histogram, the pro-members per age bucket, the birth months and the age range
+     * of all customers, for reports which would otherwise load get/all
+     * @param bucketSize Integer value representing the years per age bucket, empty for 10
+     * @param recompute boolean value, true to compute the statistics in the database and cross-check them
+     * @return CustomerStatistics of all customers
+     */
+    @GetMapping("get/statistics")
+    CustomerStatistics getStatistics(@RequestParam(required = false) Integer bucketSize,
+                                     @RequestParam(defaultValue = "false") boolean recompute){
+        return customerService.getStatistics(bucketSize, recompute);
+    }
+
+    /**
+     * method returns the hit and miss statistics of the customer cache
+     * @return Map with the statistics of the id cache and the email cache
+     */
+    @GetMapping("get/cacheStatistics")
+    Map<String, Map<String, Number>> getCacheStatistics(){
+        return customerCache.getStatistics();
+    }
+
+    /**
+     * method returns the size of the search index
+     * @return Map with the number of customers and terms and the estimated memory per customer
+     */
+    @GetMapping("get/searchStatistics")
+    Map<String, Number> getSearchStatistics(){
+        return customerSearchIndex.getStatistics();
+    }
+
+    /**
+     * method to get the state of a registration queued by the write-behind mode of post/add
+     * @param trackingId UUID value representing the tracking id the registration was answered with
+     * @return CustomerRegistration with the state and, once created, the id of the customer
+     * @throws CustomerIngestionException if the tracking id is unknown or its outcome isn't kept anymore
+     */
+    @GetMapping("get/registration/{trackingId}")
+    CustomerRegistration findRegistration(@PathVariable UUID trackingId) throws CustomerIngestionException {
+        return customerIngestion.getRegistration(trackingId);
+    }
 
     /**
      * method deletes the customer with the specific {@param id}  from the database
      * @param id Long value representing the customers id
+     * @throws CustomerNotFoundException if there is no customer with this id
      */
     @DeleteMapping("/delete/ById/{id}")
-    void deleteCustomerByID(@PathVariable Long id) {
+    void deleteCustomerByID(@PathVariable Long id) throws CustomerNotFoundException {
         customerService.deleteById(id);
     }
 
@@ -184,13 +402,64 @@ public class CustomerController {
     }
 
     /**
-     * method adds a new customer to the database
+     * method deletes many customers by id, the body is a JSON array of ids
+     * @param ids List of the customers' ids, at most customer.batch.max-size (default 1000)
+     * @return CustomerDeleteResult with the deleted ids and the ids which weren't found
+     * @throws CustomerBatchException if too many ids are sent
+     */
+    @DeleteMapping("/delete/ByIds")
+    CustomerDeleteResult<Long> deleteCustomersByIds(@RequestBody List<Long> ids) throws CustomerBatchException {
+        return customerService.deleteByIds(ids);
+    }
+
+    /**
+     * method deletes many customers by email, the body is a JSON array of emails
+     * @param emails List of the customers' emails, at most customer.batch.max-size (default 1000)
+     * @return CustomerDeleteResult with the deleted emails and the emails which weren't found
+     * @throws CustomerBatchException if too many emails are sent
+     */
+    @DeleteMapping("/delete/ByEmails")
+    CustomerDeleteResult<String> deleteCustomersByEmails(@RequestBody List<String> emails) throws CustomerBatchException {
+        return customerService.deleteByEmails(emails);
+    }
+
+    /**
+     * method adds a new customer to the database. In the write-behind mode the customer is queued instead and
+     * answered with 202 Accepted, the body and the Location header name the registration to poll
      * @param customer Customer value which is added to the database
+     * @param idempotencyKey String value chosen by the client, a registration sent again with it isn't queued twice
+     * @return empty response, the queued CustomerRegistration in the write-behind mode
      * @throws CustomerAlreadyExistingException if there is already a customer with the same id/email in the database
+     * @throws CustomerIngestionException if the queued customer lacks a name or a valid email
+     * @throws CustomerIngestionFullException if the queue of the write-behind mode is full
      */
     @PostMapping("/post/add")
-    void registerNewCustomer(@RequestBody Customer customer) throws CustomerAlreadyExistingException {
-        customerService.addNew(customer);
+    ResponseEntity<CustomerRegistration> registerNewCustomer(@RequestBody Customer customer,
+                                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey)
+            throws CustomerAlreadyExistingException, CustomerIngestionException, CustomerIngestionFullException {
+        if (!customerIngestion.isEnabled()) {
+            customerService.addNew(customer);
+            return ResponseEntity.ok().build();
+        }
+
+        CustomerRegistration registration = customerIngestion.register(customer, idempotencyKey);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/api/v1/customer/get/registration/{trackingId}")
+                        .buildAndExpand(registration.getTrackingId()).toUri())
+                .body(registration);
+    }
+
+    /**
+     * method adds many new customers to the database, the body is a JSON array or NDJSON (one customer per line)
+     * @param body InputStream of the request body
+     * @return CustomerImportResult with the outcome of every row (created, duplicate, invalid) and the rows per second
+     * @throws CustomerImportException if a row isn't readable JSON, the rows before are already stored
+     * @throws IOException if the request body can't be read
+     */
+    @PostMapping(value = "/post/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    CustomerImportResult registerNewCustomers(InputStream body) throws CustomerImportException, IOException {
+        return customerImporter.importCustomers(body);
     }
 
     /**
@@ -198,7 +467,6 @@ public class CustomerController {
      * @param Id Long value representing the id
      * @param firstName String value representing the firstname
      * @param lastName String value representing the lastname
-     * @param age int value representing the age
      * @param dateOfBirth Date value representing the date of birth
      * @param email String value representing the email
      * @param password String value representing the password
@@ -211,15 +479,30 @@ public class CustomerController {
     void updateEverything(@PathVariable("id") Long Id,
                           @RequestParam(required = false) String firstName,
                           @RequestParam(required = false) String lastName,
-                          @RequestParam(required = false) int age,
                           @RequestParam(required = false) Date dateOfBirth,
                           @RequestParam(required = false) String email,
                           @RequestParam(required = false) String password,
                           @RequestParam(required = false) boolean proMember) throws CustomerAlreadyExistingException,
             CustomerNotFoundException, CustomerPasswordTooWeakException {
-        customerService.update(Id, firstName, lastName, age, dateOfBirth, email, password, proMember);
+        customerService.update(Id, firstName, lastName, dateOfBirth, email, password, proMember);
     }
 
-
-
+    /**
+     * method writes only the fields sent in the body, based on the version the client read.
+     * Answered with 409 Conflict if the customer was written since, the client reads it again and retries.
+     * A body without a version is answered with 428 Precondition Required
+     * @param id Long value representing the id
+     * @param patch CustomerPatch holding the fields to write and the version
+     * @throws CustomerAlreadyExistingException if the new chosen email is already existing
+     * @throws CustomerNotFoundException if there is no customers with the specific id
+     * @throws CustomerPasswordTooWeakException if the new chosen password is to week
+     * @throws CustomerVersionConflictException if the version is outdated
+     * @throws CustomerVersionRequiredException if the version is missing
+     */
+    @PatchMapping("/patch/{id}")
+    void patch(@PathVariable Long id, @RequestBody CustomerPatch patch) throws CustomerAlreadyExistingException,
+            CustomerNotFoundException, CustomerPasswordTooWeakException, CustomerVersionConflictException,
+            CustomerVersionRequiredException {
+        customerService.patch(id, patch);
+    }
 }
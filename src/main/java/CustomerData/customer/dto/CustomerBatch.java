@@ -0,0 +1,17 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * result of a multi-get, the customers which were found ordered by id and the requested ids without a customer
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerBatch {
+
+    private final List<CustomerSummary> customers;
+    private final List<Long> notFound;
+}
@@ -0,0 +1,21 @@
+package CustomerData.customer.dto;
+
+import CustomerData.customer.event.CustomerChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * one committed write sent by the change feed
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerChange {
+
+    private final long sequence;    //increases by one per write, per process
+    private final CustomerChangedEvent.Type type;
+    private final long id;
+    private final CustomerSummary customer;     //state after the write, only set for CREATED and UPDATED
+    private final Map<String, Object> patch;    //the written fields and the new version, only set for PATCHED
+}
@@ -0,0 +1,31 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * criteria of the combined search, bound from the request parameters. Every criterion which is set has to match,
+ * the ones which aren't set are left out of the query
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerCriteria {
+
+    private String firstName;
+    private String lastName;
+    private String email;
+    private Integer minAge;         //inclusive
+    private Integer maxAge;         //inclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate bornFrom;     //inclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate bornTo;       //inclusive
+    private Boolean proMember;
+}
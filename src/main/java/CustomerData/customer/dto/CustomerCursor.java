@@ -0,0 +1,69 @@
+package CustomerData.customer.dto;
+
+import CustomerData.customer.exception.CustomerCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * position of a keyset page, handed to the client as an opaque token.
+ * Pages ordered by id only use the id, pages ordered by date of birth use (dateOfBirth, id).
+ * Customers without a date of birth are ordered by id in front of the oldest or behind the youngest customer
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerCursor {
+
+    private static final String BY_ID = "i";
+    private static final String BY_DOB = "d";
+    private static final String UNDATED = "u";
+
+    private final Date dateOfBirth;     //null for pages ordered by id and for customers without a date of birth
+    private final long id;
+    private final boolean byDob;
+
+    /**
+     * constructor to initialize the position of a page ordered by id, or by date of birth if it is set
+     * @param dateOfBirth Date value representing the last date of birth of the page, null for pages ordered by id
+     * @param id long value representing the last id of the page
+     */
+    public CustomerCursor(Date dateOfBirth, long id) {
+        this(dateOfBirth, id, dateOfBirth != null);
+    }
+
+    /**
+     * method encodes the cursor to the token which is sent to the client
+     * @return String value representing the opaque cursor token
+     */
+    public String encode() {
+        String raw = !byDob ? BY_ID + ":" + id
+                : dateOfBirth == null ? UNDATED + ":" + id
+                : BY_DOB + ":" + dateOfBirth.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * method decodes a cursor token which was created by {@link #encode()}
+     * @param token String value representing the cursor token sent by the client
+     * @param byDob boolean value, true if the token must belong to a page ordered by date of birth
+     * @return the decoded CustomerCursor, without a date of birth if the page ended with a customer who has none
+     * @throws CustomerCursorException if the token is malformed or belongs to another ordering
+     */
+    public static CustomerCursor decode(String token, boolean byDob) throws CustomerCursorException {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (byDob && parts.length == 3 && parts[0].equals(BY_DOB))
+                return new CustomerCursor(new Date(Long.parseLong(parts[1])), Long.parseLong(parts[2]), true);
+            if (byDob && parts.length == 2 && parts[0].equals(UNDATED))
+                return new CustomerCursor(null, Long.parseLong(parts[1]), true);
+            if (!byDob && parts.length == 2 && parts[0].equals(BY_ID))
+                return new CustomerCursor(null, Long.parseLong(parts[1]), false);
+        } catch (IllegalArgumentException e) {
+            throw new CustomerCursorException(token);
+        }
+        throw new CustomerCursorException(token);
+    }
+}
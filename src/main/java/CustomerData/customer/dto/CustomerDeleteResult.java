@@ -0,0 +1,19 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * result of a bulk delete, the requested keys (ids or emails) split into the deleted ones and the ones
+ * without a customer, both in the order of the request
+ * @param <K> type of the keys
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerDeleteResult<K> {
+
+    private final List<K> deleted;
+    private final List<K> notFound;
+}
@@ -0,0 +1,16 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class CustomerImportResult {
+    private final long created;
+    private final long duplicates;
+    private final long invalid;
+    private final double rowsPerSecond;
+    private final List<CustomerImportRow> rows;
+}
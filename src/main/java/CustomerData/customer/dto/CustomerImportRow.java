@@ -0,0 +1,21 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CustomerImportRow {
+
+    /**
+     * outcome of one imported row
+     */
+    public enum Status {
+        CREATED, DUPLICATE, INVALID
+    }
+
+    private final int row;          //1-based position in the request body
+    private final Status status;
+    private final Long id;          //id of the created customer, null otherwise
+    private final String email;
+}
@@ -0,0 +1,13 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class CustomerPage<T> {
+    private final List<T> customers;
+    private final String nextCursor;    //null if this is the last page
+}
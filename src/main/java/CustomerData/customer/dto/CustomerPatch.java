@@ -0,0 +1,35 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * body of a partial update, only the fields which are set are written. The version is the one the client read,
+ * the update fails with a conflict if the customer was written since
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerPatch {
+
+    private String firstName;
+    private String lastName;
+    private Date dateOfBirth;
+    private String email;
+    private String password;
+    private Boolean proMember;
+    private Long version;
+
+    /**
+     * method to check whether the patch changes a field the search index holds
+     * @return true if the first name, the last name or the email is set
+     */
+    public boolean changesName() {
+        return firstName != null || lastName != null || email != null;
+    }
+}
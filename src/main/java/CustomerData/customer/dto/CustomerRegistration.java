@@ -0,0 +1,26 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * state of a registration accepted by the write-behind mode of post/add, polled with its tracking id
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerRegistration {
+
+    /**
+     * progress of a registration
+     */
+    public enum Status {
+        QUEUED, CREATED, DUPLICATE, FAILED
+    }
+
+    private final UUID trackingId;
+    private final Status status;
+    private final Long id;          //id of the created customer, null otherwise
+    private final String email;
+}
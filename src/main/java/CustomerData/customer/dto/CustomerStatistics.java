@@ -0,0 +1,50 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Month;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * aggregated view of all customers for the reporting jobs. The age statistics only cover the customers
+ * with a date of birth, the ones without are counted in withoutDateOfBirth
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerStatistics {
+
+    /**
+     * where the statistics were computed
+     */
+    public enum Source {
+        MEMORY, DATABASE
+    }
+
+    private final long customers;
+    private final long proMembers;
+    private final long withoutDateOfBirth;
+    private final Integer minAge;       //null without any date of birth
+    private final Integer maxAge;
+    private final Double meanAge;
+    private final int bucketSize;       //years per age bucket
+    private final List<AgeBucket> ageBuckets;
+    private final Map<Month, Long> birthMonths;
+    private final Source source;
+    private final Boolean consistent;   //result of the cross-check, null if it wasn't requested or couldn't be done
+
+    /**
+     * number of customers whose age lies in [fromAge, toAge]
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class AgeBucket {
+
+        private final int fromAge;
+        private final int toAge;
+        private final long customers;
+        private final long proMembers;
+        private final long nonProMembers;
+    }
+}
@@ -0,0 +1,18 @@
+package CustomerData.customer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * result of the prefix search, holds only what the type-ahead shows. The CustomerSearchIndex keeps one
+ * instance per customer, so the id is a primitive to keep the entries small
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerSuggestion {
+
+    private final long id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+}
@@ -0,0 +1,41 @@
+package CustomerData.customer.dto;
+
+import CustomerData.customer.Customer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * read-only view of a customer returned by the list endpoints. It is selected directly by the CustomerRepository
+ * queries, so neither the password nor a managed entity is loaded
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerSummary {
+
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    private final Date dateOfBirth;
+    private final String email;
+    private final boolean proMember;
+    private final long version;     //the version a PATCH of the customer has to name
+
+    /**
+     * creates the summary of a loaded customer
+     * @param customer the customer
+     * @return CustomerSummary holding the customer's fields without the password
+     */
+    public static CustomerSummary of(Customer customer) {
+        return new CustomerSummary(customer.getId(), customer.getFirstName(), customer.getLastName(),
+                customer.getDateOfBirth(), customer.getEmail(), customer.isProMember(), customer.getVersion());
+    }
+
+    /**
+     * @return int value representing the age derived from the date of birth
+     */
+    public int getAge() {
+        return Customer.ageOf(dateOfBirth);
+    }
+}
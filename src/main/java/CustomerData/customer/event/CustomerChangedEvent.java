@@ -0,0 +1,62 @@
+package CustomerData.customer.event;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerPatch;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CustomerChangedEvent {
+
+    /**
+     * the kind of write which caused the event
+     */
+    public enum Type {
+        CREATED, UPDATED, PATCHED, DELETED
+    }
+
+    private final Type type;
+    private final long id;
+    private final Customer previous;    //state before the write, null for CREATED and PATCHED
+    private final Customer current;     //state after the write, null for PATCHED and DELETED
+    private final CustomerPatch patch;  //the written fields, only set for PATCHED
+
+    /**
+     * creates the event for a newly stored customer
+     * @param customer the stored customer
+     * @return CustomerChangedEvent of type CREATED holding a copy of the customer
+     */
+    public static CustomerChangedEvent created(Customer customer) {
+        return new CustomerChangedEvent(Type.CREATED, customer.getId(), null, customer.toBuilder().build(), null);
+    }
+
+    /**
+     * creates the event for an updated customer
+     * @param previous copy of the customer taken before the update
+     * @param current the updated customer
+     * @return CustomerChangedEvent of type UPDATED holding both states
+     */
+    public static CustomerChangedEvent updated(Customer previous, Customer current) {
+        return new CustomerChangedEvent(Type.UPDATED, current.getId(), previous, current.toBuilder().build(), null);
+    }
+
+    /**
+     * creates the event for a partial update, the customer isn't loaded for it, so neither state is known
+     * @param id long value representing the customer's id
+     * @param patch the written fields
+     * @return CustomerChangedEvent of type PATCHED holding the patch
+     */
+    public static CustomerChangedEvent patched(long id, CustomerPatch patch) {
+        return new CustomerChangedEvent(Type.PATCHED, id, null, null, patch);
+    }
+
+    /**
+     * creates the event for a deleted customer
+     * @param customer the deleted customer
+     * @return CustomerChangedEvent of type DELETED holding a copy of the customer
+     */
+    public static CustomerChangedEvent deleted(Customer customer) {
+        return new CustomerChangedEvent(Type.DELETED, customer.getId(), customer.toBuilder().build(), null, null);
+    }
+}
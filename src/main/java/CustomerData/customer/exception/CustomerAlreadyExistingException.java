@@ -1,7 +1,12 @@
 package CustomerData.customer.exception;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
 public class CustomerAlreadyExistingException extends RuntimeException {
 
+    private static final String EMAIL_CONSTRAINT = "uk_customer_email";
+
     /**
      * constructor to initialize the CustomerAlreadyExisting exception
      * @param email String value representing the email, is appended to the exception's message
@@ -9,4 +14,27 @@ public class CustomerAlreadyExistingException extends RuntimeException {
     public CustomerAlreadyExistingException(String email){
         super("Following email is already taken: " + email);
     }
+
+    /**
+     * constructor to initialize the CustomerAlreadyExisting exception
+     * for a violation of the unique email index whose email isn't known
+     * @param cause the violation reported by the database
+     */
+    public CustomerAlreadyExistingException(DataIntegrityViolationException cause){
+        super("Following email is already taken", cause);
+    }
+
+    /**
+     * helper method to check whether a violation was caused by the unique email index
+     * @param e the violation reported by the database
+     * @return true if the database named the unique email index as the violated constraint, violations of other
+     * or unnamed constraints (e.g. NOT NULL) aren't taken emails
+     */
+    public static boolean isEmailTaken(DataIntegrityViolationException e){
+        if (!(e.getCause() instanceof ConstraintViolationException violation))
+            return false;
+
+        String constraint = violation.getConstraintName();
+        return constraint != null && constraint.toLowerCase().contains(EMAIL_CONSTRAINT);
+    }
 }
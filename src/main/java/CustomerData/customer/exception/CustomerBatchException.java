@@ -0,0 +1,14 @@
+package CustomerData.customer.exception;
+
+public class CustomerBatchException extends RuntimeException {
+
+    /**
+     * constructor to initialize the CustomerBatchException
+     * message concerning a batch with more keys than allowed
+     * @param size int value representing the number of distinct keys sent
+     * @param maxSize int value representing the maximum number of keys per batch
+     */
+    public CustomerBatchException(int size, int maxSize){
+        super("At most " + maxSize + " ids or emails can be sent at once, got " + size);
+    }
+}
@@ -0,0 +1,12 @@
+package CustomerData.customer.exception;
+
+public class CustomerCursorException extends RuntimeException {
+
+    /**
+     * constructor to initialize the CustomerCursorException
+     * @param cursor String value representing the invalid cursor, is appended to the exception's message
+     */
+    public CustomerCursorException(String cursor){
+        super("The following cursor is invalid: " + cursor);
+    }
+}
@@ -1,4 +1,8 @@
 package CustomerData.customer.exception;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -10,6 +14,12 @@ import java.time.ZonedDateTime;
 @ControllerAdvice
 public class CustomerExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
+    public CustomerExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     /**
      * method to handle the CustomerNotFoundException's behavior
      * @param e the specific exception
@@ -17,6 +27,7 @@ public class CustomerExceptionHandler {
      */
     @ExceptionHandler(value = CustomerNotFoundException.class)
     public ResponseEntity<Object> handleCustomerException(CustomerNotFoundException e){
+        count(e);
         //payload containing exception details
         CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
         //return actual response entity
@@ -30,10 +41,27 @@ public class CustomerExceptionHandler {
      */
     @ExceptionHandler(value = CustomerAlreadyExistingException.class)
     public ResponseEntity<Object> handleCustomerAlreadyExistingException(CustomerAlreadyExistingException e){
+        count(e);
         CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
         return new ResponseEntity<>(customerException, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * method to handle violations of the unique email index which weren't translated by the service,
+     * they are answered like a CustomerAlreadyExistingException
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = DataIntegrityViolationException.class)
+    public ResponseEntity<Object> handleDataIntegrityViolationException(DataIntegrityViolationException e){
+        if (CustomerAlreadyExistingException.isEmailTaken(e))
+            return handleCustomerAlreadyExistingException(new CustomerAlreadyExistingException(e));
+
+        count(e);
+        CustomerException customerException = new CustomerException("The data violates a constraint", HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * method to handle the CustomerProMemberShipException's behavior
      * @param e the specific exception
@@ -41,7 +69,127 @@ public class CustomerExceptionHandler {
      */
     @ExceptionHandler(value = CustomerProMemberException.class)
     public ResponseEntity<Object> handleCustomerProMemberException(CustomerProMemberException e){
+        count(e);
+        CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * method to handle the CustomerCursorException's behavior
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = CustomerCursorException.class)
+    public ResponseEntity<Object> handleCustomerCursorException(CustomerCursorException e){
+        count(e);
+        CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * method to handle the CustomerImportException's behavior
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = CustomerImportException.class)
+    public ResponseEntity<Object> handleCustomerImportException(CustomerImportException e){
+        count(e);
+        CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * method to handle the CustomerBatchException's behavior
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = CustomerBatchException.class)
+    public ResponseEntity<Object> handleCustomerBatchException(CustomerBatchException e){
+        count(e);
+        CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * method to handle the CustomerSearchException's behavior
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = CustomerSearchException.class)
+    public ResponseEntity<Object> handleCustomerSearchException(CustomerSearchException e){
+        count(e);
+        CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * method to handle the CustomerIngestionException's behavior
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = CustomerIngestionException.class)
+    public ResponseEntity<Object> handleCustomerIngestionException(CustomerIngestionException e){
+        count(e);
         CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.BAD_REQUEST, ZonedDateTime.now(ZoneId.of("Z")));
         return new ResponseEntity<>(customerException, HttpStatus.BAD_REQUEST);
     }
+
+    /**
+     * method to handle the CustomerIngestionFullException's behavior, the client is told when to retry
+     * @param e the specific exception
+     * @return a new response entity including the http status code and a Retry-After header
+     */
+    @ExceptionHandler(value = CustomerIngestionFullException.class)
+    public ResponseEntity<Object> handleCustomerIngestionFullException(CustomerIngestionFullException e){
+        count(e);
+        CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE, ZonedDateTime.now(ZoneId.of("Z")));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(customerException);
+    }
+
+    /**
+     * method to handle the CustomerVersionConflictException's behavior
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = CustomerVersionConflictException.class)
+    public ResponseEntity<Object> handleCustomerVersionConflictException(CustomerVersionConflictException e){
+        count(e);
+        CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.CONFLICT, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.CONFLICT);
+    }
+
+    /**
+     * method to handle the CustomerVersionRequiredException's behavior
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = CustomerVersionRequiredException.class)
+    public ResponseEntity<Object> handleCustomerVersionRequiredException(CustomerVersionRequiredException e){
+        count(e);
+        CustomerException customerException = new CustomerException(e.getMessage(), HttpStatus.PRECONDITION_REQUIRED, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.PRECONDITION_REQUIRED);
+    }
+
+    /**
+     * method to handle a version check of Hibernate which failed because a concurrent write committed first,
+     * it is answered like a CustomerVersionConflictException
+     * @param e the specific exception
+     * @return a new response entity including the http status code
+     */
+    @ExceptionHandler(value = OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailureException(OptimisticLockingFailureException e){
+        count(e);
+        CustomerException customerException = new CustomerException("The customer was changed by a concurrent write", HttpStatus.CONFLICT, ZonedDateTime.now(ZoneId.of("Z")));
+        return new ResponseEntity<>(customerException, HttpStatus.CONFLICT);
+    }
+
+    /**
+     * helper method to count the handled exceptions by type as customer.exceptions.handled
+     * @param e the handled exception
+     */
+    private void count(Exception e) {
+        meterRegistry.counter("customer.exceptions.handled", "exception", e.getClass().getSimpleName()).increment();
+    }
 }
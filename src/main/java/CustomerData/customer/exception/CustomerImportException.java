@@ -0,0 +1,13 @@
+package CustomerData.customer.exception;
+
+public class CustomerImportException extends RuntimeException {
+
+    /**
+     * constructor to initialize the CustomerImportException
+     * @param row int value representing the row which couldn't be read, is appended to the exception's message
+     * @param reason String value describing why the row couldn't be read
+     */
+    public CustomerImportException(int row, String reason){
+        super("Import stopped at row " + row + ", all rows before were imported: " + reason);
+    }
+}
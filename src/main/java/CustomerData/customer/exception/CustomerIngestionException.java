@@ -0,0 +1,27 @@
+package CustomerData.customer.exception;
+
+import CustomerData.customer.Customer;
+
+import java.util.UUID;
+
+public class CustomerIngestionException extends RuntimeException {
+
+    /**
+     * constructor to initialize the CustomerIngestionException
+     * message concerning an unknown or expired tracking id
+     * @param trackingId UUID value representing the tracking id
+     */
+    public CustomerIngestionException(UUID trackingId){
+        super("No registration found with the following tracking id: " + trackingId);
+    }
+
+    /**
+     * constructor to initialize the CustomerIngestionException
+     * message concerning a registration which can't be queued because it lacks required traits
+     * @param customer Customer value which was sent
+     */
+    public CustomerIngestionException(Customer customer){
+        super("A customer needs a first name, a last name and an email to be registered, got the following email: "
+                + (customer == null ? null : customer.getEmail()));
+    }
+}
@@ -0,0 +1,22 @@
+package CustomerData.customer.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class CustomerIngestionFullException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    /**
+     * constructor to initialize the CustomerIngestionFullException
+     * message concerning a registration which can't be queued because the queue is full or shutting down
+     * @param capacity int value representing the capacity of the queue
+     * @param retryAfter Duration after which the client should send the registration again
+     */
+    public CustomerIngestionFullException(int capacity, Duration retryAfter){
+        super("The " + capacity + " registrations the queue holds are waiting to be stored, retry later");
+        this.retryAfter = retryAfter;
+    }
+}
@@ -49,4 +49,14 @@ public class CustomerNotFoundException extends RuntimeException{
     public CustomerNotFoundException(int age){
         super("No customer found with the following age: " + age);
     }
+
+    /**
+     * constructor to initialize the CustomerNotFoundException
+     * message concerning a non-existing age range input
+     * @param minAge int value representing the minimum age
+     * @param maxAge int value representing the maximum age
+     */
+    public CustomerNotFoundException(int minAge, int maxAge){
+        super("No customer found with an age between " + minAge + " and " + maxAge);
+    }
 }
@@ -0,0 +1,14 @@
+package CustomerData.customer.exception;
+
+public class CustomerSearchException extends RuntimeException {
+
+    /**
+     * constructor to initialize the CustomerSearchException
+     * message concerning a sort order the search doesn't support
+     * @param property String value representing the requested sort property
+     * @param sortable String value representing the properties the search can be sorted by
+     */
+    public CustomerSearchException(String property, String sortable){
+        super("The customers can't be sorted by " + property + ", only by " + sortable);
+    }
+}
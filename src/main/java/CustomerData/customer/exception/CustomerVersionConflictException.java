@@ -0,0 +1,14 @@
+package CustomerData.customer.exception;
+
+public class CustomerVersionConflictException extends RuntimeException {
+
+    /**
+     * constructor to initialize the CustomerVersionConflictException
+     * message concerning a customer which was written since the client read it
+     * @param id Long value representing the customer's id
+     * @param version Long value representing the version the client read
+     */
+    public CustomerVersionConflictException(Long id, Long version){
+        super("The customer with the following ID was changed since version " + version + ": " + id);
+    }
+}
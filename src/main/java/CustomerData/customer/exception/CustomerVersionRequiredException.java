@@ -0,0 +1,13 @@
+package CustomerData.customer.exception;
+
+public class CustomerVersionRequiredException extends RuntimeException {
+
+    /**
+     * constructor to initialize the CustomerVersionRequiredException
+     * message concerning a partial update which didn't name the version it is based on
+     * @param id Long value representing the customer's id
+     */
+    public CustomerVersionRequiredException(Long id){
+        super("The version of the customer with the following ID is required: " + id);
+    }
+}
@@ -0,0 +1,19 @@
+package CustomerData.customer.repository;
+
+import CustomerData.customer.dto.CustomerPatch;
+
+/**
+ * fragment of the CustomerRepository for the partial updates, the statement depends on the fields of the patch
+ */
+public interface CustomerPatchRepository {
+
+    /**
+     * method writes the set fields of the patch with one UPDATE ... WHERE id = ? AND version = ?,
+     * the version is incremented. No entity is loaded, the persistence context isn't touched
+     * @param id long value representing the customer's id
+     * @param version long value representing the version the patch is based on
+     * @param patch CustomerPatch holding the fields to write
+     * @return int value representing the number of updated rows, 0 if there is no customer with the id and version
+     */
+    int patch(long id, long version, CustomerPatch patch);
+}
@@ -0,0 +1,52 @@
+package CustomerData.customer.repository;
+
+import CustomerData.customer.dto.CustomerPatch;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * builds the UPDATE of a CustomerPatch, picked up by Spring Data through the Impl suffix. Every value is a bound
+ * parameter, so there is one statement per combination of set fields and Hibernate parses each of them once
+ */
+class CustomerPatchRepositoryImpl implements CustomerPatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int patch(long id, long version, CustomerPatch patch) {
+        StringBuilder jpql = new StringBuilder("UPDATE Customer customer SET customer.version = customer.version + 1");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        set(jpql, parameters, "firstName", patch.getFirstName());
+        set(jpql, parameters, "lastName", patch.getLastName());
+        set(jpql, parameters, "dateOfBirth", patch.getDateOfBirth());
+        set(jpql, parameters, "email", patch.getEmail());
+        set(jpql, parameters, "password", patch.getPassword());
+        set(jpql, parameters, "isProMember", patch.getProMember());
+        jpql.append(" WHERE customer.id = :id AND customer.version = :version");
+
+        Query query = entityManager.createQuery(jpql.toString());
+        parameters.forEach(query::setParameter);
+        return query.setParameter("id", id)
+                .setParameter("version", version)
+                .executeUpdate();
+    }
+
+    /**
+     * helper method to add the assignment of a field which is set in the patch
+     * @param jpql StringBuilder holding the statement
+     * @param parameters Map collecting the values of the statement by parameter name
+     * @param field String value representing the attribute of the Customer, also used as parameter name
+     * @param value the new value, the field is left out if null
+     */
+    private static void set(StringBuilder jpql, Map<String, Object> parameters, String field, Object value) {
+        if (value == null)
+            return;
+        jpql.append(", customer.").append(field).append(" = :").append(field);
+        parameters.put(field, value);
+    }
+}
@@ -1,14 +1,41 @@
 package CustomerData.customer.repository;
 
 import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerSuggestion;
+import CustomerData.customer.dto.CustomerSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface CustomerRepository extends JpaRepository<Customer, Long> {
+public interface CustomerRepository extends JpaRepository<Customer, Long>, CustomerPatchRepository, CustomerSearchRepository {
+
+    /**
+     * select clause of the queries returning CustomerSummary projections instead of entities
+     */
+    String SUMMARY = "SELECT new CustomerData.customer.dto.CustomerSummary(customer.id, customer.firstName, " +
+            "customer.lastName, customer.dateOfBirth, customer.email, customer.isProMember, customer.version) FROM Customer customer ";
+
+    /**
+     * method loads the summaries of all customers
+     * @param sort Sort deciding the order of the customers
+     * @return List filled with the summaries of all customers
+     */
+    @Query(SUMMARY)
+    List<CustomerSummary> findAllSummaries(Sort sort);
 
     /**
      * method to search for a specific customer who is associated with the email
@@ -17,4 +44,242 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
      */
     @Query("SELECT customer FROM Customer customer WHERE customer.email = ?1")
     Optional<Customer> findCustomerByEmail(String email);
+
+    /**
+     * method loads the summaries of the customers with the ids, one query for all ids
+     * @param ids Collection of the customers' ids
+     * @return List filled with the summaries of the existing customers ordered by id
+     */
+    @Query(SUMMARY + "WHERE customer.id IN ?1 ORDER BY customer.id")
+    List<CustomerSummary> findSummariesByIds(Collection<Long> ids);
+
+    /**
+     * method loads and locks the customers with the ids before they are deleted, a concurrent delete of the same
+     * customers waits until the transaction ends and doesn't find them anymore
+     * @param ids Collection of the customers' ids
+     * @return List filled with the existing customers
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT customer FROM Customer customer WHERE customer.id IN ?1")
+    List<Customer> lockCustomersByIds(Collection<Long> ids);
+
+    /**
+     * method loads and locks the customers with the emails before they are deleted
+     * @param emails Collection of the customers' email addresses
+     * @return List filled with the existing customers
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT customer FROM Customer customer WHERE customer.email IN ?1")
+    List<Customer> lockCustomersByEmails(Collection<String> emails);
+
+    /**
+     * method deletes the customers with the ids with one statement, no entity is loaded
+     * @param ids Collection of the customers' ids
+     * @return int value representing the number of deleted customers
+     */
+    @Modifying
+    @Query("DELETE FROM Customer customer WHERE customer.id IN ?1")
+    int deleteCustomersByIds(Collection<Long> ids);
+
+    /**
+     * method to check which of the emails already belong to a customer, one query for all emails
+     * @param emails Collection of email addresses to check
+     * @return List filled with the emails which are already taken
+     */
+    @Query("SELECT customer.email FROM Customer customer WHERE customer.email IN ?1")
+    List<String> findExistingEmails(Collection<String> emails);
+
+    /**
+     * method to search for all customers with the specific name, uses the (last_name, first_name) index
+     * @param firstName String value representing the customers' firstname
+     * @param lastName String value representing the customers' lastname
+     * @return List filled with the summaries of the matching customers
+     */
+    @Query(SUMMARY + "WHERE customer.lastName = ?2 AND customer.firstName = ?1")
+    List<CustomerSummary> findCustomersByName(String firstName, String lastName);
+
+    /**
+     * method to search for all customers who are born at the specific date, uses the date_of_birth index
+     * @param dateOfBirth Date value representing the customers' date of birth
+     * @return List filled with the summaries of the matching customers
+     */
+    @Query(SUMMARY + "WHERE customer.dateOfBirth = ?1")
+    List<CustomerSummary> findCustomersByDateOfBirth(Date dateOfBirth);
+
+    /**
+     * method to search for all customers born in the time range, uses the date_of_birth index
+     * @param from Date value representing the earliest date of birth (inclusive)
+     * @param to Date value representing the end of the range (exclusive)
+     * @return List filled with the summaries of the matching customers
+     */
+    @Query(SUMMARY + "WHERE customer.dateOfBirth >= ?1 AND customer.dateOfBirth < ?2")
+    List<CustomerSummary> findCustomersBornBetween(Date from, Date to);
+
+    /**
+     * method to search for all customers with or without a pro-membership, uses the is_pro_member index
+     * @param isProMember boolean value, true for pro-members and false for non pro-members
+     * @return List filled with the summaries of the matching customers
+     */
+    @Query(SUMMARY + "WHERE customer.isProMember = ?1")
+    List<CustomerSummary> findCustomersByProMember(boolean isProMember);
+
+    /**
+     * method counts the customers with or without a pro-membership in the database
+     * @param isProMember boolean value, true for pro-members and false for non pro-members
+     * @return long value representing the number of matching customers
+     */
+    @Query("SELECT COUNT(customer) FROM Customer customer WHERE customer.isProMember = ?1")
+    long countCustomersByProMember(boolean isProMember);
+
+    /**
+     * method counts pro-members and non pro-members with one grouped query
+     * @return List with one entry per membership state that has at least one customer
+     */
+    @Query("SELECT customer.isProMember AS proMember, COUNT(customer) AS total FROM Customer customer " +
+            "GROUP BY customer.isProMember")
+    List<ProMemberCount> countCustomersGroupedByProMember();
+
+    /**
+     * method counts the customers per date of birth and membership with one grouped query, the statistics are
+     * derived from the rows. There is at most one row per day and membership, however large the table is
+     * @return List with one entry per date of birth and membership state that has at least one customer
+     */
+    @Query("SELECT customer.dateOfBirth AS dateOfBirth, customer.isProMember AS proMember, COUNT(customer) AS total " +
+            "FROM Customer customer GROUP BY customer.dateOfBirth, customer.isProMember")
+    List<DateOfBirthCount> countCustomersGroupedByDateOfBirth();
+
+    /**
+     * method loads the keyset page of customers which follows the id, ordered by id
+     * @param id Long value representing the last id of the previous page
+     * @param pageable Pageable limiting the number of loaded customers
+     * @return List filled with the summaries of the customers of the page
+     */
+    @Query(SUMMARY + "WHERE customer.id > ?1 ORDER BY customer.id")
+    List<CustomerSummary> findPageAfterId(long id, Pageable pageable);
+
+    /**
+     * method loads the first keyset page of customers with a date of birth ordered by (date_of_birth, id), the oldest first.
+     * It follows the customers without a date of birth, which are loaded by {@link #findUndatedPageAfterId}
+     * @param pageable Pageable limiting the number of loaded customers
+     * @return List filled with the summaries of the customers of the page
+     */
+    @Query(SUMMARY + "WHERE customer.dateOfBirth IS NOT NULL " +
+            "ORDER BY customer.dateOfBirth, customer.id")
+    List<CustomerSummary> findFirstPageOldestFirst(Pageable pageable);
+
+    /**
+     * method loads the keyset page of customers which follows the (dateOfBirth, id) position, the oldest first
+     * @param dateOfBirth Date value representing the last date of birth of the previous page
+     * @param id Long value representing the last id of the previous page
+     * @param pageable Pageable limiting the number of loaded customers
+     * @return List filled with the summaries of the customers of the page
+     */
+    @Query(SUMMARY + "WHERE customer.dateOfBirth >= ?1 " +
+            "AND (customer.dateOfBirth > ?1 OR customer.id > ?2) " +
+            "ORDER BY customer.dateOfBirth, customer.id")
+    List<CustomerSummary> findPageOldestFirst(Date dateOfBirth, long id, Pageable pageable);
+
+    /**
+     * method loads the first keyset page of customers with a date of birth ordered by (date_of_birth, id), the youngest first.
+     * The customers without a date of birth follow, they are loaded by {@link #findUndatedPageBeforeId}
+     * @param pageable Pageable limiting the number of loaded customers
+     * @return List filled with the summaries of the customers of the page
+     */
+    @Query(SUMMARY + "WHERE customer.dateOfBirth IS NOT NULL " +
+            "ORDER BY customer.dateOfBirth DESC, customer.id DESC")
+    List<CustomerSummary> findFirstPageYoungestFirst(Pageable pageable);
+
+    /**
+     * method loads the keyset page of customers which follows the (dateOfBirth, id) position, the youngest first
+     * @param dateOfBirth Date value representing the last date of birth of the previous page
+     * @param id Long value representing the last id of the previous page
+     * @param pageable Pageable limiting the number of loaded customers
+     * @return List filled with the summaries of the customers of the page
+     */
+    @Query(SUMMARY + "WHERE customer.dateOfBirth <= ?1 " +
+            "AND (customer.dateOfBirth < ?1 OR customer.id < ?2) " +
+            "ORDER BY customer.dateOfBirth DESC, customer.id DESC")
+    List<CustomerSummary> findPageYoungestFirst(Date dateOfBirth, long id, Pageable pageable);
+
+    /**
+     * method loads the keyset page of customers without a date of birth which follows the id, ordered by id.
+     * H2 and MySQL sort a missing date of birth in front of all others, so these customers come before the oldest
+     * @param id Long value representing the last id of the previous page
+     * @param pageable Pageable limiting the number of loaded customers
+     * @return List filled with the summaries of the customers of the page
+     */
+    @Query(SUMMARY + "WHERE customer.dateOfBirth IS NULL AND customer.id > ?1 ORDER BY customer.id")
+    List<CustomerSummary> findUndatedPageAfterId(long id, Pageable pageable);
+
+    /**
+     * method loads the keyset page of customers without a date of birth which precedes the id, ordered by id descending.
+     * These customers come after the youngest
+     * @param id Long value representing the last id of the previous page
+     * @param pageable Pageable limiting the number of loaded customers
+     * @return List filled with the summaries of the customers of the page
+     */
+    @Query(SUMMARY + "WHERE customer.dateOfBirth IS NULL AND customer.id < ?1 ORDER BY customer.id DESC")
+    List<CustomerSummary> findUndatedPageBeforeId(long id, Pageable pageable);
+
+    /**
+     * method streams all customers ordered by id, the rows are fetched from the database in chunks of
+     * 1000 and the entities are loaded read-only. Must be consumed inside a transaction and closed afterwards.
+     * MySQL only honors the fetch size if the JDBC url contains useCursorFetch=true
+     * @return Stream of all customers
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    @Query("SELECT customer FROM Customer customer ORDER BY customer.id")
+    Stream<Customer> streamAll();
+
+    /**
+     * method streams the suggestions of all customers to build the CustomerSearchIndex, fetched in chunks of 1000.
+     * Must be consumed inside a transaction and closed afterwards
+     * @return Stream of the suggestions of all customers
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new CustomerData.customer.dto.CustomerSuggestion(customer.id, customer.firstName, " +
+            "customer.lastName, customer.email) FROM Customer customer")
+    Stream<CustomerSuggestion> streamSuggestions();
+
+    /**
+     * method streams the emails of all customers to build the CustomerEmailFilter, fetched in chunks of 1000.
+     * Must be consumed inside a transaction and closed afterwards
+     * @return Stream of the emails of all customers
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT customer.email FROM Customer customer WHERE customer.email IS NOT NULL")
+    Stream<String> streamEmails();
+
+    /**
+     * method searches the customers whose first name, last name or email starts with the prefix, ignoring the case
+     * like the CustomerSearchIndex, used if the index is disabled
+     * @param pattern String value representing the prefix followed by %, ! escapes the wildcards
+     * @param pageable Pageable limiting the number of results
+     * @return List filled with the suggestions of the matching customers
+     */
+    @Query("SELECT new CustomerData.customer.dto.CustomerSuggestion(customer.id, customer.firstName, " +
+            "customer.lastName, customer.email) FROM Customer customer " +
+            "WHERE LOWER(customer.firstName) LIKE LOWER(?1) ESCAPE '!' OR LOWER(customer.lastName) LIKE LOWER(?1) ESCAPE '!' " +
+            "OR LOWER(customer.email) LIKE LOWER(?1) ESCAPE '!' ORDER BY customer.id")
+    List<CustomerSuggestion> findSuggestions(String pattern, Pageable pageable);
+
+    /**
+     * projection for one row of {@link #countCustomersGroupedByProMember()}
+     */
+    interface ProMemberCount {
+        boolean getProMember();
+        long getTotal();
+    }
+
+    /**
+     * projection for one row of {@link #countCustomersGroupedByDateOfBirth()}
+     */
+    interface DateOfBirthCount {
+        Date getDateOfBirth();
+        boolean getProMember();
+        long getTotal();
+    }
 }
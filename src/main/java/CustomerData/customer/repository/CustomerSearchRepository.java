@@ -0,0 +1,24 @@
+package CustomerData.customer.repository;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerSummary;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * fragment of the CustomerRepository for the combined search, the query depends on the criteria which are set
+ */
+public interface CustomerSearchRepository {
+
+    /**
+     * method loads the summaries of the customers matching the specification with one SELECT.
+     * Neither the password nor a managed entity is loaded and no count query is run
+     * @param specification Specification combining the criteria
+     * @param sort Sort deciding the order of the customers
+     * @param limit int value representing the maximum number of customers
+     * @return List filled with the summaries of the matching customers
+     */
+    List<CustomerSummary> findSummaries(Specification<Customer> specification, Sort sort, int limit);
+}
@@ -0,0 +1,45 @@
+package CustomerData.customer.repository;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerSummary;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+/**
+ * runs a Specification as a CustomerSummary projection, picked up by Spring Data through the Impl suffix.
+ * The findAll methods of a JpaSpecificationExecutor load entities and add a count query to limit the results,
+ * this builds the same criteria into a single SELECT of the summary columns with a row limit
+ */
+class CustomerSearchRepositoryImpl implements CustomerSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CustomerSummary> findSummaries(Specification<Customer> specification, Sort sort, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CustomerSummary> query = builder.createQuery(CustomerSummary.class);
+        Root<Customer> customer = query.from(Customer.class);
+        query.select(builder.construct(CustomerSummary.class, customer.get("id"), customer.get("firstName"),
+                customer.get("lastName"), customer.get("dateOfBirth"), customer.get("email"),
+                customer.get("isProMember"), customer.get("version")));
+
+        Predicate predicate = specification.toPredicate(customer, query, builder);
+        if (predicate != null)
+            query.where(predicate);
+        query.orderBy(QueryUtils.toOrders(sort, customer, builder));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,72 @@
+package CustomerData.customer.repository;
+
+import CustomerData.customer.Customer;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Date;
+
+/**
+ * criteria of the combined search, each one is null if its value isn't set, so they can be chained with
+ * Specification.where(...).and(...) and only the set ones end up in the query. The comparisons are on the
+ * indexed columns: the email, (last_name, first_name), date_of_birth and is_pro_member
+ */
+public final class CustomerSpecifications {
+
+    private CustomerSpecifications() {
+    }
+
+    /**
+     * @param firstName String value representing the customers' firstname
+     * @return Specification matching the firstname, null if it isn't set
+     */
+    public static Specification<Customer> hasFirstName(String firstName) {
+        return isBlank(firstName) ? null : (customer, query, builder) -> builder.equal(customer.get("firstName"), firstName);
+    }
+
+    /**
+     * @param lastName String value representing the customers' lastname
+     * @return Specification matching the lastname, null if it isn't set
+     */
+    public static Specification<Customer> hasLastName(String lastName) {
+        return isBlank(lastName) ? null : (customer, query, builder) -> builder.equal(customer.get("lastName"), lastName);
+    }
+
+    /**
+     * @param email String value representing the customer's email
+     * @return Specification matching the email, null if it isn't set
+     */
+    public static Specification<Customer> hasEmail(String email) {
+        return isBlank(email) ? null : (customer, query, builder) -> builder.equal(customer.get("email"), email);
+    }
+
+    /**
+     * @param from Date value representing the earliest date of birth (inclusive)
+     * @return Specification matching the customers born at or after the date, null if it isn't set
+     */
+    public static Specification<Customer> bornFrom(Date from) {
+        return from == null ? null
+                : (customer, query, builder) -> builder.greaterThanOrEqualTo(customer.get("dateOfBirth"), from);
+    }
+
+    /**
+     * @param before Date value representing the end of the range (exclusive)
+     * @return Specification matching the customers born before the date, null if it isn't set
+     */
+    public static Specification<Customer> bornBefore(Date before) {
+        return before == null ? null
+                : (customer, query, builder) -> builder.lessThan(customer.get("dateOfBirth"), before);
+    }
+
+    /**
+     * @param proMember Boolean value, true for pro-members and false for non pro-members
+     * @return Specification matching the membership, null if it isn't set
+     */
+    public static Specification<Customer> hasProMember(Boolean proMember) {
+        return proMember == null ? null
+                : (customer, query, builder) -> builder.equal(customer.get("isProMember"), proMember);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isEmpty();
+    }
+}
@@ -0,0 +1,275 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.config.CustomerRoutingDataSource;
+import CustomerData.customer.dto.CustomerStatistics;
+import CustomerData.customer.event.CustomerChangedEvent;
+import CustomerData.customer.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * number of pro-members and non pro-members per date of birth, the customer statistics are derived from it without
+ * reading the customer table. There is at most one entry per day of birth, so the statistics take the same time
+ * for any number of customers. The counts are kept up to date from the committed writes of the CustomerService
+ * and are re-checked against the database every customer.statistics.reconcile-interval milliseconds (default 60000).
+ * With customer.statistics.enabled=false every request groups the customer table in the database instead
+ */
+@Slf4j
+@Component
+public class CustomerAggregates {
+
+    private final CustomerRepository customerRepository;
+    private final boolean enabled;
+
+    private Counts counts = new Counts();   //guarded by this
+    private final AtomicLong changes = new AtomicLong();    //number of applied writes, detects writes during a reconcile
+    private volatile boolean initialized;
+
+    /**
+     * constructor to initialize the CustomerAggregates, Dependency Injection
+     * @param customerRepository CustomerRepository to group the customers in the database
+     * @param enabled boolean value to decide whether the statistics are served from memory
+     */
+    @Autowired
+    public CustomerAggregates(CustomerRepository customerRepository,
+                              @Value("${customer.statistics.enabled:true}") boolean enabled) {
+        this.customerRepository = customerRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * method to check whether the statistics can be served from memory
+     * @return true if the aggregates are enabled and were loaded at least once since the last unknown change
+     */
+    public boolean isActive() {
+        return enabled && initialized;
+    }
+
+    /**
+     * method computes the statistics, from memory if possible. With recompute the customer table is grouped in the
+     * database, and if the aggregates are active they are cross-checked against the result and replaced if they drifted
+     * @param bucketSize int value representing the years per age bucket
+     * @param recompute boolean value, true to compute the statistics in the database
+     * @return CustomerStatistics of all customers
+     */
+    public CustomerStatistics getStatistics(int bucketSize, boolean recompute) {
+        if (!recompute && isActive()) {
+            synchronized (this) {
+                return counts.summarize(bucketSize, CustomerStatistics.Source.MEMORY, null);
+            }
+        }
+
+        long changesBefore = changes.get();
+        Counts database = load();
+        if (!enabled)
+            return database.summarize(bucketSize, CustomerStatistics.Source.DATABASE, null);
+
+        Boolean consistent = null;
+        synchronized (this) {
+            //a write applied while the database was grouped makes the result outdated
+            if (changes.get() == changesBefore) {
+                if (recompute && initialized) {
+                    consistent = counts.equals(database);
+                    if (!consistent)
+                        log.warn("The customer statistics drifted from the database, they are replaced");
+                }
+                counts = database.copy();
+                initialized = true;
+            }
+        }
+        return database.summarize(bucketSize, CustomerStatistics.Source.DATABASE, consistent);
+    }
+
+    /**
+     * method applies a committed write of the CustomerService to the counts. A patch of the date of birth or the
+     * pro-membership doesn't tell the previous state, the statistics are computed in the database again until the
+     * next reconcile
+     * @param event the event describing the write
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (!enabled)
+            return;
+
+        synchronized (this) {
+            if (event.getType() == CustomerChangedEvent.Type.PATCHED) {
+                if (event.getPatch().getDateOfBirth() != null || event.getPatch().getProMember() != null) {
+                    initialized = false;
+                    changes.incrementAndGet();
+                }
+                return;
+            }
+            if (event.getPrevious() != null)
+                counts.add(event.getPrevious(), -1);
+            if (event.getCurrent() != null)
+                counts.add(event.getCurrent(), 1);
+            changes.incrementAndGet();
+        }
+    }
+
+    /**
+     * method loads the counts at startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (enabled)
+            reconcile();
+    }
+
+    /**
+     * method re-checks the counts against the primary database so they can't drift.
+     * If a write is applied while the database is queried the result is discarded and the next run tries again
+     */
+    @Scheduled(fixedDelayString = "${customer.statistics.reconcile-interval:60000}",
+            initialDelayString = "${customer.statistics.reconcile-interval:60000}")
+    public void reconcile() {
+        if (!enabled)
+            return;
+
+        long changesBefore = changes.get();
+        Counts database = load();
+        synchronized (this) {
+            if (changes.get() != changesBefore && initialized)
+                return;
+            counts = database;
+            initialized = true;
+        }
+    }
+
+    /**
+     * helper method to group the customers of the primary database by date of birth and membership
+     * @return Counts of the database
+     */
+    private Counts load() {
+        Counts database = new Counts();
+        for (CustomerRepository.DateOfBirthCount count
+                : CustomerRoutingDataSource.onPrimary(customerRepository::countCustomersGroupedByDateOfBirth))
+            database.add(count.getDateOfBirth(), count.getProMember(), count.getTotal());
+        return database;
+    }
+
+    /**
+     * number of non pro-members (index 0) and pro-members (index 1) per day of birth
+     */
+    private static final class Counts {
+
+        private final Map<LocalDate, long[]> days = new HashMap<>();
+        private final long[] undated = new long[2];     //customers without a date of birth
+
+        private void add(Customer customer, long delta) {
+            add(customer.getDateOfBirth(), customer.isProMember(), delta);
+        }
+
+        private void add(Date dateOfBirth, boolean proMember, long delta) {
+            int membership = proMember ? 1 : 0;
+            if (dateOfBirth == null) {
+                undated[membership] += delta;
+                return;
+            }
+            //the same day as Customer.ageOf derives the age from
+            LocalDate day = Instant.ofEpochMilli(dateOfBirth.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+            long[] count = days.computeIfAbsent(day, key -> new long[2]);
+            count[membership] += delta;
+            if (count[0] == 0 && count[1] == 0)
+                days.remove(day);
+        }
+
+        private Counts copy() {
+            Counts copy = new Counts();
+            days.forEach((day, count) -> copy.days.put(day, count.clone()));
+            System.arraycopy(undated, 0, copy.undated, 0, undated.length);
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Counts that) || !Arrays.equals(undated, that.undated) || days.size() != that.days.size())
+                return false;
+            for (Map.Entry<LocalDate, long[]> day : days.entrySet())
+                if (!Arrays.equals(day.getValue(), that.days.get(day.getKey())))
+                    return false;
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return days.size() * 31 + Arrays.hashCode(undated);
+        }
+
+        /**
+         * helper method to derive the statistics, the ages are computed for today
+         * @param bucketSize int value representing the years per age bucket
+         * @param source Source of the counts
+         * @param consistent Boolean value representing the result of the cross-check, null without one
+         * @return CustomerStatistics of the counts
+         */
+        private CustomerStatistics summarize(int bucketSize, CustomerStatistics.Source source, Boolean consistent) {
+            LocalDate today = LocalDate.now();
+            Map<Integer, long[]> ages = new HashMap<>();
+            Map<Month, Long> birthMonths = new EnumMap<>(Month.class);
+            for (Month month : Month.values())
+                birthMonths.put(month, 0L);
+
+            long dated = 0;
+            long proMembers = undated[1];
+            long ageSum = 0;
+            int minAge = Integer.MAX_VALUE;
+            int maxAge = Integer.MIN_VALUE;
+            for (Map.Entry<LocalDate, long[]> day : days.entrySet()) {
+                long[] count = day.getValue();
+                long customers = count[0] + count[1];
+                int age = Period.between(day.getKey(), today).getYears();
+                long[] ageCount = ages.computeIfAbsent(age, key -> new long[2]);
+                ageCount[0] += count[0];
+                ageCount[1] += count[1];
+                birthMonths.merge(day.getKey().getMonth(), customers, Long::sum);
+                dated += customers;
+                proMembers += count[1];
+                ageSum += age * customers;
+                minAge = Math.min(minAge, age);
+                maxAge = Math.max(maxAge, age);
+            }
+
+            List<CustomerStatistics.AgeBucket> buckets = new ArrayList<>();
+            if (dated > 0) {
+                for (int from = Math.floorDiv(minAge, bucketSize) * bucketSize; from <= maxAge; from += bucketSize) {
+                    long nonPro = 0;
+                    long pro = 0;
+                    for (int age = from; age < from + bucketSize; age++) {
+                        long[] ageCount = ages.get(age);
+                        if (ageCount != null) {
+                            nonPro += ageCount[0];
+                            pro += ageCount[1];
+                        }
+                    }
+                    buckets.add(new CustomerStatistics.AgeBucket(from, from + bucketSize - 1, nonPro + pro, pro, nonPro));
+                }
+            }
+
+            return new CustomerStatistics(dated + undated[0] + undated[1], proMembers, undated[0] + undated[1],
+                    dated > 0 ? minAge : null, dated > 0 ? maxAge : null, dated > 0 ? (double) ageSum / dated : null,
+                    bucketSize, buckets, birthMonths, source, consistent);
+        }
+    }
+}
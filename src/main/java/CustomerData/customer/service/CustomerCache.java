@@ -0,0 +1,136 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.config.CustomerRoutingDataSource;
+import CustomerData.customer.event.CustomerChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * bounded read-through cache for the customer lookups by id and by email (W-TinyLFU eviction, TTL after write).
+ * Entries are invalidated after every committed write of the CustomerService. A lookup loads the customer while
+ * it holds the entry, so an invalidation waits for a running load and no value read before a commit can stay cached.
+ * The entries are loaded from the primary database, a lagging read replica could hand out a value older than the last commit
+ */
+@Component
+public class CustomerCache {
+
+    private final boolean enabled;
+    private final Cache<Long, Customer> byId;
+    private final Cache<String, Customer> byEmail;
+
+    /**
+     * constructor to initialize the CustomerCache
+     * @param enabled boolean value to decide whether the lookups are cached (customer.cache.enabled)
+     * @param maximumSize long value representing the maximum number of entries per cache
+     * @param ttl Duration after which an entry is reloaded from the database
+     */
+    @Autowired
+    public CustomerCache(@Value("${customer.cache.enabled:true}") boolean enabled,
+                         @Value("${customer.cache.maximum-size:10000}") long maximumSize,
+                         @Value("${customer.cache.ttl:10m}") Duration ttl) {
+        this.enabled = enabled;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.byEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * method returns the cached customer with the id or loads it
+     * @param id Long value representing the customer's id
+     * @param loader Function loading the customer from the database, returns null if there is none
+     * @return the customer or null if there is no customer with this id
+     */
+    public Customer getById(Long id, Function<Long, Customer> loader) {
+        return enabled ? byId.get(id, key -> CustomerRoutingDataSource.onPrimary(() -> loader.apply(key))) : loader.apply(id);
+    }
+
+    /**
+     * method returns the cached customer with the email or loads it
+     * @param email String value representing the customer's email
+     * @param loader Function loading the customer from the database, returns null if there is none
+     * @return the customer or null if there is no customer with this email
+     */
+    public Customer getByEmail(String email, Function<String, Customer> loader) {
+        return enabled ? byEmail.get(email, key -> CustomerRoutingDataSource.onPrimary(() -> loader.apply(key))) : loader.apply(email);
+    }
+
+    /**
+     * method removes every entry a committed write touched, the old and the new email are both invalidated.
+     * A patch doesn't tell the old email, so the email entries are searched for the customer's id
+     * @param event the event describing the write
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (event.getType() == CustomerChangedEvent.Type.PATCHED) {
+            byId.invalidate(event.getId());
+            byEmail.asMap().values().removeIf(customer -> customer.getId() == event.getId());
+            return;
+        }
+        invalidate(event.getPrevious());
+        invalidate(event.getCurrent());
+    }
+
+    /**
+     * method removes all entries
+     */
+    public void invalidateAll() {
+        byId.invalidateAll();
+        byEmail.invalidateAll();
+    }
+
+    /**
+     * method collects the hit and miss statistics of both caches
+     * @return Map with the statistics of the id cache and the email cache
+     */
+    public Map<String, Map<String, Number>> getStatistics() {
+        Map<String, Map<String, Number>> statistics = new LinkedHashMap<>();
+        statistics.put("byId", statisticsOf(byId));
+        statistics.put("byEmail", statisticsOf(byEmail));
+        return statistics;
+    }
+
+    /**
+     * helper method to remove the entries of one customer state
+     * @param customer the customer state, ignored if null
+     */
+    private void invalidate(Customer customer) {
+        if (customer == null)
+            return;
+        if (customer.getId() != null)
+            byId.invalidate(customer.getId());
+        if (customer.getEmail() != null)
+            byEmail.invalidate(customer.getEmail());
+    }
+
+    /**
+     * helper method to convert the statistics of one cache
+     */
+    private static Map<String, Number> statisticsOf(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Number> statistics = new LinkedHashMap<>();
+        statistics.put("size", cache.estimatedSize());
+        statistics.put("hitCount", stats.hitCount());
+        statistics.put("missCount", stats.missCount());
+        statistics.put("hitRate", stats.hitRate());
+        statistics.put("evictionCount", stats.evictionCount());
+        return statistics;
+    }
+}
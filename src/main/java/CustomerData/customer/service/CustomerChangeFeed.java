@@ -0,0 +1,385 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.dto.CustomerChange;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.dto.CustomerSummary;
+import CustomerData.customer.event.CustomerChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * feed of the committed writes of the CustomerService as Server-Sent Events, for clients which keep a copy of the
+ * customers instead of polling get/all. Every write gets the next sequence number, the event id is the sequence
+ * prefixed with the epoch of the process. The last customer.feed.buffer-size (default 10000) changes are kept, a client
+ * which reconnects with the id of the last event it received gets the changes it missed. If they aren't kept anymore
+ * or the id is from an earlier process, it gets a RESET event and has to load all customers again.
+ * Every subscriber has its own queue of at most customer.feed.subscriber-queue (default 1000) changes, a subscriber
+ * which falls further behind is disconnected and resumes from the buffer when it reconnects. The events are sent by
+ * customer.feed.threads (default 4) threads, so the writes don't wait for the subscribers
+ */
+@Slf4j
+@Component
+public class CustomerChangeFeed {
+
+    static final String RESET = "RESET";
+
+    //distinguishes the sequence numbers of this process from the ones handed out before a restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int subscriberQueue;
+    private final long timeoutMillis;
+    private final ExecutorService senders;
+    private final Deque<CustomerChange> buffer = new ArrayDeque<>();     //guarded by this
+    private final Set<Subscriber> subscribers = new LinkedHashSet<>();   //guarded by this
+    private final AtomicLong overflows = new AtomicLong();
+    private long sequence;  //guarded by this
+
+    /**
+     * constructor to initialize the CustomerChangeFeed
+     * @param objectMapper ObjectMapper serializing each change once for all subscribers
+     * @param bufferSize int value representing the number of changes kept for reconnecting subscribers
+     * @param subscriberQueue int value representing the number of changes a subscriber may fall behind
+     * @param timeout Duration after which a subscription ends and the client has to reconnect
+     * @param threads int value representing the number of threads sending the events
+     */
+    @Autowired
+    public CustomerChangeFeed(ObjectMapper objectMapper,
+                              @Value("${customer.feed.buffer-size:10000}") int bufferSize,
+                              @Value("${customer.feed.subscriber-queue:1000}") int subscriberQueue,
+                              @Value("${customer.feed.timeout:30m}") Duration timeout,
+                              @Value("${customer.feed.threads:4}") int threads) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.subscriberQueue = subscriberQueue;
+        this.timeoutMillis = timeout.toMillis();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "customer-feed-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * method adds a committed write of the CustomerService to the feed
+     * @param event the event describing the write
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        switch (event.getType()) {
+            case CREATED, UPDATED -> publish(event.getType(), event.getId(), CustomerSummary.of(event.getCurrent()), null);
+            case PATCHED -> publish(event.getType(), event.getId(), null, fieldsOf(event.getPatch()));
+            case DELETED -> publish(event.getType(), event.getId(), null, null);
+        }
+    }
+
+    /**
+     * method subscribes a client to the changes committed from now on
+     * @param lastEventId String value representing the id of the last event the client received, null for a new client
+     * @return SseEmitter sending the missed and the new changes
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        List<Event> initial = new ArrayList<>();
+        //sends the headers right away, so the client knows it is subscribed
+        initial.add(Event.comment("subscribed"));
+        synchronized (this) {
+            if (lastEventId != null) {
+                long since = sequenceOf(lastEventId);
+                boolean missed = since < 0 || since > sequence
+                        || since < sequence && (buffer.isEmpty() || buffer.getFirst().getSequence() > since + 1);
+                if (missed) {
+                    initial.add(new Event(eventId(sequence), RESET, "{\"sequence\":" + sequence + "}"));
+                } else {
+                    for (CustomerChange change : buffer)
+                        if (change.getSequence() > since)
+                            initial.add(eventOf(change));
+                }
+            }
+            //the emitter holds these until the controller returned it, so the response is committed by the request
+            //thread. A sender thread committing it while the filters still write headers corrupts the response
+            try {
+                for (Event event : initial)
+                    emitter.send(event.toBuilder());
+            } catch (IOException e) {
+                throw new IllegalStateException("The change feed was subscribed after the response was started", e);
+            }
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    /**
+     * method sends a comment to the idle subscribers, so connections which were closed by the client are noticed
+     * and proxies don't close the idle ones
+     */
+    @Scheduled(fixedDelayString = "${customer.feed.heartbeat-interval:15000}",
+            initialDelayString = "${customer.feed.heartbeat-interval:15000}")
+    public void heartbeat() {
+        List<Subscriber> idle = new ArrayList<>();
+        synchronized (this) {
+            idle.addAll(subscribers);
+        }
+        for (Subscriber subscriber : idle)
+            subscriber.offerIfIdle(Event.comment(""));
+    }
+
+    /**
+     * @return int value representing the number of connected subscribers
+     */
+    public synchronized int getSubscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return long value representing the number of subscribers disconnected because they fell behind
+     */
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    /**
+     * method ends the subscriptions at shutdown, the clients reconnect to another instance
+     */
+    @PreDestroy
+    public void close() {
+        List<Subscriber> all;
+        synchronized (this) {
+            all = new ArrayList<>(subscribers);
+            subscribers.clear();
+        }
+        for (Subscriber subscriber : all)
+            subscriber.close();
+        senders.shutdown();
+    }
+
+    /**
+     * helper method to number a change, keep it for reconnecting subscribers and queue it for the connected ones.
+     * Runs under the lock, so every subscriber gets the changes in the order of their sequence numbers
+     */
+    private synchronized void publish(CustomerChangedEvent.Type type, long id, CustomerSummary customer,
+                                      Map<String, Object> patch) {
+        CustomerChange change = new CustomerChange(++sequence, type, id, customer, patch);
+        buffer.addLast(change);
+        if (buffer.size() > bufferSize)
+            buffer.removeFirst();
+        if (subscribers.isEmpty())
+            return;
+
+        Event event = eventOf(change);
+        for (Iterator<Subscriber> iterator = subscribers.iterator(); iterator.hasNext(); ) {
+            Subscriber subscriber = iterator.next();
+            if (!subscriber.offer(event)) {
+                iterator.remove();
+                overflows.incrementAndGet();
+                subscriber.close();
+            }
+        }
+    }
+
+    private synchronized void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * helper method to serialize a change once for all subscribers
+     */
+    private Event eventOf(CustomerChange change) {
+        try {
+            return new Event(eventId(change.getSequence()), change.getType().name(), objectMapper.writeValueAsString(change));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Change " + change.getSequence() + " can't be serialized", e);
+        }
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * helper method to read the sequence number from an event id
+     * @return long value representing the sequence number, -1 if the id isn't one of this process
+     */
+    private long sequenceOf(String eventId) {
+        if (!eventId.startsWith(epoch + "-"))
+            return -1;
+        try {
+            return Long.parseLong(eventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * helper method to list the written fields of a patch without the password, with the version after the write
+     */
+    private static Map<String, Object> fieldsOf(CustomerPatch patch) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        if (patch.getFirstName() != null)
+            fields.put("firstName", patch.getFirstName());
+        if (patch.getLastName() != null)
+            fields.put("lastName", patch.getLastName());
+        if (patch.getDateOfBirth() != null)
+            fields.put("dateOfBirth", patch.getDateOfBirth());
+        if (patch.getEmail() != null)
+            fields.put("email", patch.getEmail());
+        if (patch.getProMember() != null)
+            fields.put("proMember", patch.getProMember());
+        fields.put("version", patch.getVersion() + 1);
+        return fields;
+    }
+
+    /**
+     * connection of one client with the events which weren't sent yet. At most one sender drains the queue at a time
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Deque<Event> pending = new ArrayDeque<>();     //guarded by this
+        private boolean sending;    //guarded by this
+        private boolean closed;     //guarded by this
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * method queues a new event
+         * @return false if the subscriber fell too far behind
+         */
+        private synchronized boolean offer(Event event) {
+            if (closed)
+                return true;
+            if (pending.size() >= subscriberQueue)
+                return false;
+            pending.addLast(event);
+            schedule();
+            return true;
+        }
+
+        private synchronized void offerIfIdle(Event event) {
+            if (!closed && pending.isEmpty()) {
+                pending.addLast(event);
+                schedule();
+            }
+        }
+
+        /**
+         * method drops the pending events and completes the response once a running send is done
+         */
+        private synchronized void close() {
+            closed = true;
+            pending.clear();
+            schedule();
+        }
+
+        private void schedule() {
+            if (sending)
+                return;
+            sending = true;
+            senders.execute(this::drain);
+        }
+
+        /**
+         * helper method to complete the response, the connection might be gone already
+         */
+        private void complete() {
+            try {
+                emitter.complete();
+            } catch (RuntimeException e) {
+                log.debug("Subscriber of the change feed disconnected: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * helper method to send the pending events until the queue is empty
+         */
+        private void drain() {
+            while (true) {
+                Event event;
+                boolean complete;
+                synchronized (this) {
+                    event = pending.pollFirst();
+                    complete = event == null && closed;
+                    if (event == null)
+                        sending = false;
+                }
+                if (event == null) {
+                    //outside the lock, the completion callback takes the lock of the feed
+                    if (complete)
+                        complete();
+                    return;
+                }
+                try {
+                    emitter.send(event.toBuilder());
+                } catch (IOException | IllegalStateException e) {
+                    //the container completes the response of a failed send
+                    log.debug("Subscriber of the change feed disconnected: {}", e.getMessage());
+                    synchronized (this) {
+                        closed = true;
+                        pending.clear();
+                        sending = false;
+                    }
+                    unsubscribe(this);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * event shared by all subscribers, the builder holding the written text is created per send
+     */
+    private static final class Event {
+
+        private final String id;
+        private final String name;
+        private final String data;  //the comment if there is no name
+
+        private Event(String id, String name, String data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+
+        private static Event comment(String comment) {
+            return new Event(null, null, comment);
+        }
+
+        private SseEmitter.SseEventBuilder toBuilder() {
+            if (name == null)
+                return SseEmitter.event().comment(data);
+            return SseEmitter.event().id(id).name(name).data(data);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.config.CustomerRoutingDataSource;
+import CustomerData.customer.event.CustomerChangedEvent;
+import CustomerData.customer.repository.CustomerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * in-process counter for the number of pro-members and non pro-members,
+ * only used if the property customer.counter.enabled is set to true.
+ * The counts are kept up to date from the committed writes of the CustomerService
+ * and are re-checked against the database on a fixed schedule (customer.counter.reconcile-interval)
+ */
+@Component
+public class CustomerCounter {
+
+    private final CustomerRepository customerRepository;
+    private final boolean enabled;
+
+    private final AtomicLong proMembers = new AtomicLong();
+    private final AtomicLong nonProMembers = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();    //number of applied writes, detects writes during a reconcile
+    private volatile boolean initialized;
+
+    /**
+     * constructor to initialize the CustomerCounter, Dependency Injection
+     * @param customerRepository CustomerRepository to load the counts from the database
+     * @param enabled boolean value to decide whether the in-process counts are used
+     */
+    @Autowired
+    public CustomerCounter(CustomerRepository customerRepository,
+                           @Value("${customer.counter.enabled:false}") boolean enabled) {
+        this.customerRepository = customerRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * method to check whether the counts can be served from memory
+     * @return true if the counter mode is enabled and the counts were loaded at least once
+     */
+    public boolean isActive() {
+        return enabled && initialized;
+    }
+
+    /**
+     * @return long value representing the number of pro-members
+     */
+    public long getNumberOfProMembers() {
+        return proMembers.get();
+    }
+
+    /**
+     * @return long value representing the number of non pro-members
+     */
+    public long getNumberOfNonProMembers() {
+        return nonProMembers.get();
+    }
+
+    /**
+     * @return long value representing the number of customers
+     */
+    public long getNumberOfCustomers() {
+        return proMembers.get() + nonProMembers.get();
+    }
+
+    /**
+     * method applies a committed write of the CustomerService to the counts. A patch of the pro-membership doesn't
+     * tell the previous state, the counts are served from the database again until the next reconcile
+     * @param event the event describing the write
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (!enabled)
+            return;
+
+        synchronized (this) {
+            if (event.getType() == CustomerChangedEvent.Type.PATCHED) {
+                if (event.getPatch().getProMember() != null) {
+                    initialized = false;
+                    changes.incrementAndGet();
+                }
+                return;
+            }
+            if (event.getPrevious() != null)
+                counterOf(event.getPrevious()).decrementAndGet();
+            if (event.getCurrent() != null)
+                counterOf(event.getCurrent()).incrementAndGet();
+            changes.incrementAndGet();
+        }
+    }
+
+    /**
+     * method loads the counts at startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (enabled)
+            reconcile();
+    }
+
+    /**
+     * method re-checks the counts against the primary database so they can't drift.
+     * If a write is applied while the database is queried the result is discarded and the next run tries again
+     */
+    @Scheduled(fixedDelayString = "${customer.counter.reconcile-interval:60000}",
+            initialDelayString = "${customer.counter.reconcile-interval:60000}")
+    public void reconcile() {
+        if (!enabled)
+            return;
+
+        long changesBefore = changes.get();
+        long pro = 0;
+        long nonPro = 0;
+        List<CustomerRepository.ProMemberCount> counts =
+                CustomerRoutingDataSource.onPrimary(customerRepository::countCustomersGroupedByProMember);
+        for (CustomerRepository.ProMemberCount count : counts) {
+            if (count.getProMember())
+                pro = count.getTotal();
+            else
+                nonPro = count.getTotal();
+        }
+
+        synchronized (this) {
+            if (changes.get() != changesBefore && initialized)
+                return;
+            proMembers.set(pro);
+            nonProMembers.set(nonPro);
+            initialized = true;
+        }
+    }
+
+    /**
+     * helper method to pick the counter which belongs to the customer's membership
+     * @param customer the specific customer
+     * @return AtomicLong counting the customer's membership state
+     */
+    private AtomicLong counterOf(Customer customer) {
+        return customer.isProMember() ? proMembers : nonProMembers;
+    }
+}
@@ -0,0 +1,283 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.config.CustomerRoutingDataSource;
+import CustomerData.customer.event.CustomerChangedEvent;
+import CustomerData.customer.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter over the emails of all customers, so lookups of emails without a customer don't query the database,
+ * only used if the property customer.email-filter.enabled is set to true (default false).
+ * An email the filter doesn't contain has no customer, an email it contains might have one and is looked up.
+ * The filter only sees the writes of this instance, it is meant for a single instance of the api. Emails written by
+ * other instances or with JDBC are reported missing until the next rebuild.
+ * The filter is built from the primary database at startup for twice the customers with a false-positive rate of
+ * customer.email-filter.false-positive-rate (default 0.01), but takes at most customer.email-filter.max-size (default 8MB),
+ * a larger table gets a higher rate. Emails are added by Hibernate before an insert or update is written, so also the
+ * writes which bypass the CustomerService are seen before they commit, JDBC writes aren't seen.
+ * Deleted emails stay in the filter until it is rebuilt every customer.email-filter.rebuild-interval milliseconds
+ * (default 3600000). Until the first build every email might have a customer
+ */
+@Slf4j
+@Component
+public class CustomerEmailFilter {
+
+    private static final long MIN_CAPACITY = 1024;
+    //the filter replaced by a rebuild is still asked for this long, it holds the emails of transactions which
+    //were flushed before the rebuild started and committed after its scan
+    private static final Duration PREVIOUS_GRACE = Duration.ofMinutes(1);
+
+    private final CustomerRepository customerRepository;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final long maxBits;
+
+    private volatile Bloom current = new Bloom(MIN_CAPACITY * 16, 1);  //collects the emails until the first build
+    private volatile boolean built;
+    private volatile Bloom previous;
+    private volatile long previousUntil;
+    private Bloom building;     //guarded by this, only set while the filter is rebuilt
+    private final AtomicLong avoided = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    /**
+     * constructor to initialize the CustomerEmailFilter, Dependency Injection.
+     * Registers the Hibernate listeners adding the emails of inserted and updated customers
+     * @param customerRepository CustomerRepository to read the emails of all customers
+     * @param entityManagerFactory EntityManagerFactory of Hibernate to listen to the written customers
+     * @param enabled boolean value to decide whether the filter is used (customer.email-filter.enabled)
+     * @param falsePositiveRate double value representing the share of absent emails which are still looked up
+     * @param maxSize DataSize value representing the most memory the filter may take
+     */
+    @Autowired
+    public CustomerEmailFilter(CustomerRepository customerRepository,
+                               EntityManagerFactory entityManagerFactory,
+                               @Value("${customer.email-filter.enabled:false}") boolean enabled,
+                               @Value("${customer.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                               @Value("${customer.email-filter.max-size:8MB}") DataSize maxSize) {
+        this.customerRepository = customerRepository;
+        this.enabled = enabled;
+        this.falsePositiveRate = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        this.maxBits = Math.max(Long.SIZE, maxSize.toBytes() * Byte.SIZE);
+
+        if (enabled) {
+            EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                    .getServiceRegistry().getService(EventListenerRegistry.class);
+            listeners.appendListeners(EventType.PRE_INSERT, (PreInsertEventListener) event -> {
+                if (event.getEntity() instanceof Customer customer)
+                    add(customer.getEmail());
+                return false;
+            });
+            listeners.appendListeners(EventType.PRE_UPDATE, (PreUpdateEventListener) event -> {
+                if (event.getEntity() instanceof Customer customer)
+                    add(customer.getEmail());
+                return false;
+            });
+        }
+    }
+
+    /**
+     * method checks whether an email might have a customer, the lookups which aren't needed are counted
+     * @param email String value representing the email
+     * @return false if there is no customer with the email, true if there might be one
+     */
+    public boolean mightExist(String email) {
+        if (!enabled || !built || email == null || contains(email))
+            return true;
+
+        avoided.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * method counts a lookup of an email which might have had a customer, but had none
+     */
+    public void falsePositive() {
+        if (enabled && built)
+            falsePositives.incrementAndGet();
+    }
+
+    /**
+     * method adds the emails of a bulk patch, which isn't seen by the Hibernate listeners.
+     * Called when the patch is published, before its transaction commits
+     * @param event CustomerChangedEvent of the CustomerService
+     */
+    @EventListener
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (event.getType() == CustomerChangedEvent.Type.PATCHED && event.getPatch().getEmail() != null)
+            add(event.getPatch().getEmail());
+    }
+
+    /**
+     * method builds a new filter from the emails of all customers in the primary database and replaces the current one.
+     * Runs at startup and every customer.email-filter.rebuild-interval milliseconds to drop the deleted emails
+     * and to add the emails written by other instances or with JDBC,
+     * emails written while it runs are added to both filters
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${customer.email-filter.rebuild-interval:3600000}",
+            initialDelayString = "${customer.email-filter.rebuild-interval:3600000}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!enabled)
+            return;
+
+        long start = System.nanoTime();
+        long capacity = Math.max(MIN_CAPACITY, 2 * CustomerRoutingDataSource.onPrimary(customerRepository::count));
+        long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        if (bits > maxBits) {
+            log.warn("The email filter for {} customers needs {} bytes, it is limited to {} bytes and gets more false positives",
+                    capacity, bits / Byte.SIZE, maxBits / Byte.SIZE);
+            bits = maxBits;
+        }
+        int hashes = (int) Math.max(1, Math.min(30, Math.round((double) bits / capacity * Math.log(2))));
+        Bloom filter = new Bloom(bits, hashes);
+
+        synchronized (this) {
+            building = filter;
+        }
+        try (Stream<String> emails = CustomerRoutingDataSource.onPrimary(customerRepository::streamEmails)) {
+            emails.forEach(filter::add);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                building = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            previous = current;
+            previousUntil = System.nanoTime() + PREVIOUS_GRACE.toNanos();
+            current = filter;
+            building = null;
+            built = true;
+        }
+        log.info("Built the email filter with {} bytes and {} hashes in {} ms", getBytes(), hashes,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return long value representing the number of lookups which weren't sent to the database
+     */
+    public long getAvoided() {
+        return avoided.get();
+    }
+
+    /**
+     * @return long value representing the number of lookups which were sent to the database and found no customer
+     */
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    /**
+     * @return long value representing the memory of the current filter in bytes
+     */
+    public long getBytes() {
+        return current.bytes();
+    }
+
+    /**
+     * helper method to check whether the current filter or the one it replaced within the grace period contains an email
+     * @param email String value representing the email
+     * @return true if the email might have a customer
+     */
+    private boolean contains(String email) {
+        if (current.mightContain(email))
+            return true;
+        Bloom older = previous;
+        return older != null && System.nanoTime() - previousUntil < 0 && older.mightContain(email);
+    }
+
+    /**
+     * helper method to add an email to the current filter and to the one being built
+     * @param email String value representing the written email
+     */
+    private void add(String email) {
+        if (email == null)
+            return;
+        synchronized (this) {
+            current.add(email);
+            if (building != null)
+                building.add(email);
+        }
+    }
+
+    /**
+     * bit array of a Bloom filter, the bits of an email are chosen by double hashing one 64-bit hash.
+     * Bits are set and read without locking
+     */
+    private static final class Bloom {
+
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int hashes;
+
+        private Bloom(long bits, int hashes) {
+            this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (bits + Long.SIZE - 1) / Long.SIZE));
+            this.bits = (long) words.length() * Long.SIZE;
+            this.hashes = hashes;
+        }
+
+        private void add(String email) {
+            long hash = hash(email);
+            long step = mix(hash) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(hash + i * step, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value = words.get(word);
+                while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask))
+                    value = words.get(word);
+            }
+        }
+
+        private boolean mightContain(String email) {
+            long hash = hash(email);
+            long step = mix(hash) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(hash + i * step, bits);
+                if ((words.get((int) (bit >>> 6)) & 1L << bit) == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        private long bytes() {
+            return (long) words.length() * Long.BYTES;
+        }
+
+        //FNV-1a over the chars, spread by the finalizer of MurmurHash3
+        private static long hash(String email) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < email.length(); i++)
+                hash = (hash ^ email.charAt(i)) * 0x100000001b3L;
+            return mix(hash);
+        }
+
+        private static long mix(long hash) {
+            hash = (hash ^ hash >>> 33) * 0xff51afd7ed558ccdL;
+            hash = (hash ^ hash >>> 33) * 0xc4ceb93fe1a85ec3L;
+            return hash ^ hash >>> 33;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.repository.CustomerRepository;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.stream.Stream;
+
+/**
+ * writes all customers to an OutputStream as NDJSON or CSV while they are read from the database,
+ * every customer is detached after it was written so the memory usage doesn't grow with the number of rows.
+ * The password is never exported
+ */
+@Component
+public class CustomerExporter {
+
+    /**
+     * the supported export formats
+     */
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final String CSV_HEADER = "id,firstName,lastName,age,dateOfBirth,email,proMember\n";
+
+    private final CustomerRepository customerRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * constructor to initialize the CustomerExporter, Dependency Injection
+     * @param customerRepository CustomerRepository to stream the customers from
+     * @param entityManager EntityManager to detach the written customers
+     * @param objectMapper ObjectMapper providing the configured JSON factory
+     */
+    @Autowired
+    public CustomerExporter(CustomerRepository customerRepository,
+                            EntityManager entityManager,
+                            ObjectMapper objectMapper) {
+        this.customerRepository = customerRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * method writes all customers in the chosen format to the output stream
+     * @param format Format of the export
+     * @param out OutputStream the export is written to, isn't closed by this method
+     * @return long value representing the number of exported customers
+     * @throws IOException if writing to the output stream fails
+     */
+    @Transactional(readOnly = true)
+    public long export(Format format, OutputStream out) throws IOException {
+        try (Stream<Customer> customers = customerRepository.streamAll()) {
+            return format == Format.CSV ? writeCsv(customers, out) : writeNdjson(customers, out);
+        }
+    }
+
+    /**
+     * helper method to write one JSON object per line
+     */
+    private long writeNdjson(Stream<Customer> customers, OutputStream out) throws IOException {
+        long count = 0;
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (Customer customer : (Iterable<Customer>) customers::iterator) {
+                json.writeStartObject();
+                json.writeNumberField("id", customer.getId());
+                json.writeStringField("firstName", customer.getFirstName());
+                json.writeStringField("lastName", customer.getLastName());
+                json.writeNumberField("age", customer.getAge());
+                json.writeStringField("dateOfBirth", format(customer.getDateOfBirth()));
+                json.writeStringField("email", customer.getEmail());
+                json.writeBooleanField("proMember", customer.isProMember());
+                json.writeEndObject();
+                json.writeRaw('\n');
+                entityManager.detach(customer);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * helper method to write a header line and one CSV line per customer
+     */
+    private long writeCsv(Stream<Customer> customers, OutputStream out) throws IOException {
+        long count = 0;
+        Writer csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        csv.write(CSV_HEADER);
+        for (Customer customer : (Iterable<Customer>) customers::iterator) {
+            csv.write(String.valueOf(customer.getId()));
+            csv.write(',');
+            csv.write(escape(customer.getFirstName()));
+            csv.write(',');
+            csv.write(escape(customer.getLastName()));
+            csv.write(',');
+            csv.write(String.valueOf(customer.getAge()));
+            csv.write(',');
+            csv.write(escape(format(customer.getDateOfBirth())));
+            csv.write(',');
+            csv.write(escape(customer.getEmail()));
+            csv.write(',');
+            csv.write(String.valueOf(customer.isProMember()));
+            csv.write('\n');
+            entityManager.detach(customer);
+            count++;
+        }
+        csv.flush();
+        return count;
+    }
+
+    /**
+     * helper method to format a date as ISO-8601 instant
+     */
+    private static String format(Date date) {
+        return date == null ? null : Instant.ofEpochMilli(date.getTime()).toString();
+    }
+
+    /**
+     * helper method to quote a CSV value if it contains a separator, quote or line break
+     */
+    private static String escape(String value) {
+        if (value == null)
+            return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
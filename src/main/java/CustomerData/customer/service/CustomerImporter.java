@@ -0,0 +1,210 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerImportResult;
+import CustomerData.customer.dto.CustomerImportRow;
+import CustomerData.customer.event.CustomerChangedEvent;
+import CustomerData.customer.exception.CustomerAlreadyExistingException;
+import CustomerData.customer.exception.CustomerImportException;
+import CustomerData.customer.repository.CustomerRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * imports many customers from a JSON array or NDJSON body. The rows are read one by one and stored in chunks,
+ * every chunk checks its emails with one IN query and is inserted with JDBC batch statements in its own transaction
+ */
+@Component
+public class CustomerImporter {
+
+    private final CustomerRepository customerRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectReader customerReader;
+    private final int chunkSize;
+
+    /**
+     * constructor to initialize the CustomerImporter, Dependency Injection
+     * @param customerRepository CustomerRepository to check the emails and flush a chunk
+     * @param entityManager EntityManager to persist and clear a chunk
+     * @param transactionTemplate TransactionTemplate running one transaction per chunk
+     * @param eventPublisher ApplicationEventPublisher to announce every created customer
+     * @param objectMapper ObjectMapper to read the customers of the request body
+     * @param chunkSize int value representing the number of rows stored per transaction
+     */
+    @Autowired
+    public CustomerImporter(CustomerRepository customerRepository,
+                            EntityManager entityManager,
+                            TransactionTemplate transactionTemplate,
+                            ApplicationEventPublisher eventPublisher,
+                            ObjectMapper objectMapper,
+                            @Value("${customer.import.chunk-size:1000}") int chunkSize) {
+        this.customerRepository = customerRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.customerReader = objectMapper.readerFor(Customer.class);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * method imports all customers of the input, a JSON array as well as whitespace separated
+     * JSON objects (NDJSON) are accepted
+     * @param in InputStream containing the customers
+     * @return CustomerImportResult with the outcome of every row and the achieved rows per second
+     * @throws CustomerImportException if a row isn't readable JSON, the rows before are already stored
+     * @throws IOException if the input can't be read
+     */
+    public CustomerImportResult importCustomers(InputStream in) throws CustomerImportException, IOException {
+        long start = System.nanoTime();
+        List<CustomerImportRow> rows = new ArrayList<>();
+        List<Customer> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkRows = new ArrayList<>(chunkSize);
+        int row = 0;
+
+        try (MappingIterator<Customer> customers = customerReader.readValues(in)) {
+            while (customers.hasNextValue()) {
+                row++;
+                Customer customer = customers.nextValue();
+                if (!isValid(customer)) {
+                    rows.add(new CustomerImportRow(row, CustomerImportRow.Status.INVALID, null,
+                            customer == null ? null : customer.getEmail()));
+                    continue;
+                }
+
+                customer.setId(null);
+                chunk.add(customer);
+                chunkRows.add(row);
+                if (chunk.size() == chunkSize) {
+                    rows.addAll(importChunk(chunk, chunkRows));
+                    chunk.clear();
+                    chunkRows.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            rows.addAll(importChunk(chunk, chunkRows));
+            throw new CustomerImportException(row, e.getOriginalMessage());
+        }
+        rows.addAll(importChunk(chunk, chunkRows));
+
+        return result(rows, System.nanoTime() - start);
+    }
+
+    /**
+     * method stores one chunk in a single transaction, also for the CustomerIngestion. Emails which are already taken
+     * or appear twice in the chunk are reported as duplicates
+     * @param chunk List filled with the valid customers of the chunk
+     * @param chunkRows List filled with the row numbers of the customers
+     * @return List filled with the outcome of every row of the chunk
+     */
+    List<CustomerImportRow> importChunk(List<Customer> chunk, List<Integer> chunkRows) {
+        if (chunk.isEmpty())
+            return List.of();
+
+        try {
+            return importChunkBatched(chunk, chunkRows);
+        } catch (DataIntegrityViolationException e) {
+            if (!CustomerAlreadyExistingException.isEmailTaken(e))
+                throw e;
+            //a concurrent write took one of the emails after the IN query, store the rows one by one instead
+            return importChunkRowByRow(chunk, chunkRows);
+        }
+    }
+
+    /**
+     * helper method to store the chunk with JDBC batch statements in a single transaction
+     */
+    private List<CustomerImportRow> importChunkBatched(List<Customer> chunk, List<Integer> chunkRows) {
+        return transactionTemplate.execute(status -> {
+            Set<String> taken = new HashSet<>(customerRepository.findExistingEmails(
+                    chunk.stream().map(Customer::getEmail).toList()));
+            List<Customer> created = new ArrayList<>();
+            List<CustomerImportRow> rows = new ArrayList<>(chunk.size());
+
+            for (int i = 0; i < chunk.size(); i++) {
+                Customer customer = chunk.get(i);
+                if (!taken.add(customer.getEmail())) {
+                    rows.add(new CustomerImportRow(chunkRows.get(i), CustomerImportRow.Status.DUPLICATE, null, customer.getEmail()));
+                    continue;
+                }
+                entityManager.persist(customer);
+                created.add(customer);
+                rows.add(new CustomerImportRow(chunkRows.get(i), CustomerImportRow.Status.CREATED, customer.getId(), customer.getEmail()));
+            }
+
+            customerRepository.flush();
+            entityManager.clear();
+            created.forEach(customer -> eventPublisher.publishEvent(CustomerChangedEvent.created(customer)));
+            return rows;
+        });
+    }
+
+    /**
+     * helper method to store every row of the chunk in its own transaction,
+     * rows violating the unique email index are reported as duplicates
+     */
+    private List<CustomerImportRow> importChunkRowByRow(List<Customer> chunk, List<Integer> chunkRows) {
+        List<CustomerImportRow> rows = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Customer customer = chunk.get(i);
+            customer.setId(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    entityManager.persist(customer);
+                    customerRepository.flush();
+                    eventPublisher.publishEvent(CustomerChangedEvent.created(customer));
+                });
+                rows.add(new CustomerImportRow(chunkRows.get(i), CustomerImportRow.Status.CREATED, customer.getId(), customer.getEmail()));
+            } catch (DataIntegrityViolationException e) {
+                if (!CustomerAlreadyExistingException.isEmailTaken(e))
+                    throw e;
+                rows.add(new CustomerImportRow(chunkRows.get(i), CustomerImportRow.Status.DUPLICATE, null, customer.getEmail()));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * method checks the required customer traits, also of the registrations queued by the CustomerIngestion
+     * @param customer Customer value read from the input
+     * @return true if names and email are present and the email contains an @
+     */
+    static boolean isValid(Customer customer) {
+        return customer != null
+                && customer.getFirstName() != null && !customer.getFirstName().isBlank()
+                && customer.getLastName() != null && !customer.getLastName().isBlank()
+                && customer.getEmail() != null && customer.getEmail().indexOf('@') > 0;
+    }
+
+    /**
+     * helper method to summarize the rows of the import
+     * @param rows List filled with the outcome of every row
+     * @param nanos long value representing the duration of the import
+     * @return CustomerImportResult of the import
+     */
+    private static CustomerImportResult result(List<CustomerImportRow> rows, long nanos) {
+        long created = rows.stream().filter(row -> row.getStatus() == CustomerImportRow.Status.CREATED).count();
+        long duplicates = rows.stream().filter(row -> row.getStatus() == CustomerImportRow.Status.DUPLICATE).count();
+        double rowsPerSecond = nanos == 0 ? 0 : rows.size() * 1_000_000_000d / nanos;
+        rows.sort(Comparator.comparingInt(CustomerImportRow::getRow));
+        return new CustomerImportResult(created, duplicates, rows.size() - created - duplicates, rowsPerSecond, rows);
+    }
+}
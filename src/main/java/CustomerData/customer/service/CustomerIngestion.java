@@ -0,0 +1,569 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerImportRow;
+import CustomerData.customer.dto.CustomerRegistration;
+import CustomerData.customer.exception.CustomerIngestionException;
+import CustomerData.customer.exception.CustomerIngestionFullException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * write-behind mode of post/add, turned on with customer.ingestion.enabled=true. A registration is validated, put into
+ * a queue of at most customer.ingestion.queue-capacity (default 10000) customers and answered with a tracking id right
+ * away. One worker thread stores the queued customers in transactions of up to customer.ingestion.batch-size
+ * (default 100) customers, the same way the CustomerImporter stores a chunk. A registration which finds the queue full
+ * is answered with 503 and a Retry-After of customer.ingestion.retry-after (default 1s). A registration sent again with
+ * the same Idempotency-Key gets the tracking id of the first one, the keys and the outcomes are kept for
+ * customer.ingestion.retention (default 1h). At shutdown the queue is drained for up to customer.ingestion.drain-timeout
+ * (default 30s). With customer.ingestion.journal naming a file every registration is appended to it and forced to disk
+ * before it is answered, the registrations which weren't stored are queued again at the next start. The journal is only
+ * readable by the owner and the passwords in it are encrypted with the AES key customer.ingestion.journal-key (Base64),
+ * which is required with the journal. The registrations of a batch which fails are reported as FAILED and aren't
+ * queued again
+ */
+@Slf4j
+@Component
+public class CustomerIngestion {
+
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private final CustomerImporter customerImporter;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final Duration retryAfter;
+    private final Duration drainTimeout;
+    private final BlockingQueue<Registration> queue;
+    private final Map<UUID, Registration> queued = new ConcurrentHashMap<>();  //accepted and not stored yet
+    private final Cache<UUID, CustomerRegistration> finished;
+    private final Cache<String, UUID> idempotencyKeys;
+    private final List<Registration> replayed = new ArrayList<>();  //read from the journal, stored before the queue
+    private final AtomicLong rejected = new AtomicLong();
+    private final Path journal;
+    private final SecretKeySpec journalKey;
+    private final SecureRandom random = new SecureRandom();
+    private FileChannel journalChannel;     //guarded by this
+    private boolean closing;                //guarded by this
+    private Thread worker;
+
+    /**
+     * constructor to initialize the CustomerIngestion, Dependency Injection.
+     * The registrations of the journal which weren't stored are queued again
+     * @param customerImporter CustomerImporter storing the batches
+     * @param objectMapper ObjectMapper writing and reading the journal
+     * @param enabled boolean value to decide whether post/add queues the registrations
+     * @param queueCapacity int value representing the number of registrations waiting to be stored at most
+     * @param batchSize int value representing the number of registrations stored per transaction
+     * @param retryAfter Duration after which a client which found the queue full should retry
+     * @param retention Duration for which the idempotency keys and the outcomes are kept
+     * @param drainTimeout Duration the shutdown waits for the queue to be stored
+     * @param journal String value representing the path of the journal, empty for no journal
+     * @param journalKey String value representing the Base64 AES key encrypting the passwords in the journal
+     * @throws IOException if the journal can't be read or opened
+     * @throws IllegalArgumentException if the journal is used without a valid key
+     */
+    @Autowired
+    public CustomerIngestion(CustomerImporter customerImporter,
+                             ObjectMapper objectMapper,
+                             @Value("${customer.ingestion.enabled:false}") boolean enabled,
+                             @Value("${customer.ingestion.queue-capacity:10000}") int queueCapacity,
+                             @Value("${customer.ingestion.batch-size:100}") int batchSize,
+                             @Value("${customer.ingestion.retry-after:1s}") Duration retryAfter,
+                             @Value("${customer.ingestion.retention:1h}") Duration retention,
+                             @Value("${customer.ingestion.drain-timeout:30s}") Duration drainTimeout,
+                             @Value("${customer.ingestion.journal:}") String journal,
+                             @Value("${customer.ingestion.journal-key:}") String journalKey) throws IOException {
+        this.customerImporter = customerImporter;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.retryAfter = retryAfter;
+        this.drainTimeout = drainTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.finished = Caffeine.newBuilder().expireAfterWrite(retention).build();
+        this.idempotencyKeys = Caffeine.newBuilder().expireAfterWrite(retention).build();
+        this.journal = enabled && !journal.isBlank() ? Path.of(journal) : null;
+        this.journalKey = this.journal != null ? key(journalKey) : null;
+        if (this.journal != null) {
+            replay();
+            createOwnerOnly(this.journal);
+            journalChannel = FileChannel.open(this.journal, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * @return true if post/add queues the registrations
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * method validates a registration and queues it to be stored by the worker
+     * @param customer Customer value which is registered
+     * @param idempotencyKey String value chosen by the client for the registration, null if it isn't sent again
+     * @return CustomerRegistration with the tracking id, of the first registration with the idempotency key
+     * @throws CustomerIngestionException if the customer lacks a name or a valid email
+     * @throws CustomerIngestionFullException if the queue is full or the application is shutting down
+     */
+    public CustomerRegistration register(Customer customer, String idempotencyKey) throws CustomerIngestionException,
+            CustomerIngestionFullException {
+        if (!CustomerImporter.isValid(customer))
+            throw new CustomerIngestionException(customer);
+        customer.setId(null);
+
+        if (idempotencyKey == null)
+            return accept(new Registration(UUID.randomUUID(), null, customer));
+        UUID trackingId = idempotencyKeys.asMap().computeIfAbsent(idempotencyKey,
+                key -> accept(new Registration(UUID.randomUUID(), key, customer)).getTrackingId());
+        return getRegistration(trackingId);
+    }
+
+    /**
+     * method returns the state of a registration
+     * @param trackingId UUID value returned when the registration was accepted
+     * @return CustomerRegistration with the state of the registration
+     * @throws CustomerIngestionException if the tracking id is unknown or its outcome isn't kept anymore
+     */
+    public CustomerRegistration getRegistration(UUID trackingId) throws CustomerIngestionException {
+        //the outcome is kept before the registration leaves the queued ones
+        Registration registration = queued.get(trackingId);
+        if (registration != null)
+            return registration.withStatus(CustomerRegistration.Status.QUEUED, null);
+        CustomerRegistration outcome = finished.getIfPresent(trackingId);
+        if (outcome == null)
+            throw new CustomerIngestionException(trackingId);
+        return outcome;
+    }
+
+    /**
+     * @return int value representing the registrations accepted and not stored yet
+     */
+    public int getQueued() {
+        return queued.size();
+    }
+
+    /**
+     * @return long value representing the registrations answered with 503 because the queue was full
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * method starts the worker once the application is ready, so the listeners of the created customers exist
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || worker != null || closing)
+            return;
+        worker = new Thread(this::drain, "customer-ingestion");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * method stops accepting registrations at shutdown and waits for the worker to store the queued ones.
+     * The registrations which weren't stored in time stay in the journal
+     * @throws InterruptedException if the shutdown is interrupted while waiting
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        Thread running;
+        synchronized (this) {
+            closing = true;
+            running = worker;
+        }
+        if (running != null)
+            running.join(Math.max(1, drainTimeout.toMillis()));     //0 would wait forever
+        if (!queued.isEmpty())
+            log.warn("{} registrations weren't stored before the shutdown{}", queued.size(),
+                    journal != null ? ", they are kept in the journal" : "");
+
+        synchronized (this) {
+            if (journalChannel != null) {
+                try {
+                    journalChannel.close();
+                } catch (IOException e) {
+                    log.warn("The journal {} couldn't be closed", journal, e);
+                }
+                journalChannel = null;
+            }
+        }
+    }
+
+    /**
+     * helper method to journal and queue a valid registration
+     * @param registration Registration which is accepted
+     * @return CustomerRegistration of the queued registration
+     */
+    private synchronized CustomerRegistration accept(Registration registration) {
+        //only this method adds to the queue, so the capacity can't be taken in between
+        if (closing || queue.remainingCapacity() == 0) {
+            rejected.incrementAndGet();
+            throw new CustomerIngestionFullException(queueCapacity, retryAfter);
+        }
+        if (journalChannel != null)
+            append(List.of(JournalEntry.accepted(registration, encrypt(registration.customer.getPassword()))), true);
+        queued.put(registration.trackingId, registration);
+        queue.add(registration);
+        return registration.withStatus(CustomerRegistration.Status.QUEUED, null);
+    }
+
+    /**
+     * helper method run by the worker, stores the journaled registrations and then the queue in batches
+     * until the application is shut down and the queue is empty
+     */
+    private void drain() {
+        for (int from = 0; from < replayed.size(); from += batchSize)
+            store(replayed.subList(from, Math.min(from + batchSize, replayed.size())));
+        replayed.clear();
+
+        List<Registration> batch = new ArrayList<>(batchSize);
+        while (true) {
+            Registration first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                synchronized (this) {
+                    if (closing && queue.isEmpty())
+                        return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            store(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * helper method to store one batch in a single transaction and keep the outcome of every registration.
+     * If the batch fails its registrations are reported as FAILED and are retired from the journal,
+     * so they aren't queued again at the next start
+     * @param batch List filled with the registrations of the batch
+     */
+    private void store(List<Registration> batch) {
+        List<Customer> customers = new ArrayList<>(batch.size());
+        List<Integer> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            customers.add(batch.get(i).customer);
+            rows.add(i + 1);
+        }
+
+        List<CustomerImportRow> outcomes;
+        try {
+            outcomes = customerImporter.importChunk(customers, rows);
+        } catch (RuntimeException e) {
+            log.error("{} queued registrations couldn't be stored", batch.size(), e);
+            for (Registration registration : batch)
+                finish(registration, registration.withStatus(CustomerRegistration.Status.FAILED, null));
+            retire(batch);
+            return;
+        }
+
+        for (CustomerImportRow outcome : outcomes) {
+            Registration registration = batch.get(outcome.getRow() - 1);
+            finish(registration, registration.withStatus(outcome.getStatus() == CustomerImportRow.Status.CREATED
+                    ? CustomerRegistration.Status.CREATED : CustomerRegistration.Status.DUPLICATE, outcome.getId()));
+        }
+        retire(batch);
+    }
+
+    /**
+     * helper method to mark the registrations of a batch as finished in the journal, stored or failed
+     * @param batch List filled with the registrations of the batch
+     */
+    private void retire(List<Registration> batch) {
+        synchronized (this) {
+            if (journalChannel == null)
+                return;
+            //nothing is waiting, the journal starts over instead of growing with every registration
+            if (queued.isEmpty())
+                truncateJournal();
+            else
+                append(batch.stream().map(JournalEntry::finished).toList(), false);
+        }
+    }
+
+    /**
+     * helper method to keep the outcome of a registration before it leaves the queued ones
+     */
+    private void finish(Registration registration, CustomerRegistration outcome) {
+        finished.put(registration.trackingId, outcome);
+        queued.remove(registration.trackingId);
+    }
+
+    /**
+     * helper method to read the journal, queue the registrations which weren't stored again
+     * and rewrite the journal with only these
+     * @throws IOException if the journal can't be read or rewritten
+     */
+    private void replay() throws IOException {
+        if (!Files.exists(journal))
+            return;
+
+        Map<UUID, JournalEntry> pending = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                JournalEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, JournalEntry.class);
+                } catch (JsonProcessingException e) {
+                    //the last line of a crash may be incomplete, its registration wasn't answered
+                    log.warn("Skipped an unreadable line of the journal {}", journal);
+                    continue;
+                }
+                if (entry.isFinished())
+                    pending.remove(entry.getTrackingId());
+                else
+                    pending.put(entry.getTrackingId(), entry);
+            }
+        }
+
+        Path rewritten = journal.resolveSibling(journal.getFileName() + ".tmp");
+        Files.deleteIfExists(rewritten);
+        createOwnerOnly(rewritten);
+        try (BufferedWriter writer = Files.newBufferedWriter(rewritten, StandardCharsets.UTF_8)) {
+            for (JournalEntry entry : pending.values()) {
+                writer.write(objectMapper.writeValueAsString(entry));
+                writer.newLine();
+            }
+        }
+        Files.move(rewritten, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (JournalEntry entry : pending.values()) {
+            Registration registration = entry.toRegistration(decrypt(entry.getPassword()));
+            replayed.add(registration);
+            queued.put(registration.trackingId, registration);
+            if (registration.idempotencyKey != null)
+                idempotencyKeys.put(registration.idempotencyKey, registration.trackingId);
+        }
+        if (!pending.isEmpty())
+            log.info("Queued {} registrations of the journal {} again", pending.size(), journal);
+    }
+
+    /**
+     * helper method to append entries to the journal, runs under the lock
+     * @param entries List filled with the entries, one line each
+     * @param force boolean value, true to wait until the entries are on disk
+     */
+    private void append(List<JournalEntry> entries, boolean force) {
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (JournalEntry entry : entries)
+                lines.append(objectMapper.writeValueAsString(entry)).append('\n');
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining())
+                journalChannel.write(buffer);
+            if (force)
+                journalChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("The journal " + journal + " can't be written", e);
+        }
+    }
+
+    /**
+     * helper method to empty the journal once every registration was stored, runs under the lock
+     */
+    private void truncateJournal() {
+        try {
+            journalChannel.truncate(0);
+        } catch (IOException e) {
+            log.warn("The journal {} couldn't be truncated", journal, e);
+        }
+    }
+
+    /**
+     * helper method to create a file only the owner can read and write, on file systems with POSIX permissions
+     * @param file Path of the file, an existing file gets the permissions
+     * @throws IOException if the file can't be created
+     */
+    private static void createOwnerOnly(Path file) throws IOException {
+        boolean posix = file.toAbsolutePath().getFileSystem().supportedFileAttributeViews().contains("posix");
+        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rw-------");
+        if (Files.exists(file)) {
+            if (posix)
+                Files.setPosixFilePermissions(file, ownerOnly);
+        } else if (posix) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(ownerOnly));
+        } else {
+            Files.createFile(file);
+        }
+    }
+
+    /**
+     * helper method to read the AES key of the journal
+     * @param key String value representing the Base64 key of 16, 24 or 32 bytes
+     * @return SecretKeySpec of the key
+     * @throws IllegalArgumentException if the key is missing or has another length
+     */
+    private static SecretKeySpec key(String key) {
+        byte[] bytes = key.isBlank() ? new byte[0] : Base64.getDecoder().decode(key.trim());
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32)
+            throw new IllegalArgumentException("customer.ingestion.journal-key has to be a Base64 AES key of 16, 24 "
+                    + "or 32 bytes when customer.ingestion.journal is set");
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    /**
+     * helper method to encrypt a password with AES-GCM before it is journaled
+     * @param password String value representing the password, may be null
+     * @return String value representing the Base64 of the random IV followed by the cipher text
+     */
+    private String encrypt(String password) {
+        if (password == null)
+            return null;
+        try {
+            byte[] iv = new byte[GCM_IV_BYTES];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, journalKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] encrypted = cipher.doFinal(password.getBytes(StandardCharsets.UTF_8));
+            byte[] line = new byte[iv.length + encrypted.length];
+            System.arraycopy(iv, 0, line, 0, iv.length);
+            System.arraycopy(encrypted, 0, line, iv.length, encrypted.length);
+            return Base64.getEncoder().encodeToString(line);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("The password of a registration can't be encrypted", e);
+        }
+    }
+
+    /**
+     * helper method to decrypt a journaled password
+     * @param encrypted String value written by {@link #encrypt(String)}, may be null
+     * @return String value representing the password
+     * @throws IllegalStateException if the journal was written with another key
+     */
+    private String decrypt(String encrypted) {
+        if (encrypted == null)
+            return null;
+        try {
+            byte[] line = Base64.getDecoder().decode(encrypted);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, journalKey, new GCMParameterSpec(GCM_TAG_BITS, line, 0, GCM_IV_BYTES));
+            return new String(cipher.doFinal(line, GCM_IV_BYTES, line.length - GCM_IV_BYTES), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("The journal " + journal + " can't be decrypted with "
+                    + "customer.ingestion.journal-key", e);
+        }
+    }
+
+    /**
+     * registration waiting in the queue
+     */
+    private static final class Registration {
+
+        private final UUID trackingId;
+        private final String idempotencyKey;
+        private final Customer customer;
+
+        private Registration(UUID trackingId, String idempotencyKey, Customer customer) {
+            this.trackingId = trackingId;
+            this.idempotencyKey = idempotencyKey;
+            this.customer = customer;
+        }
+
+        private CustomerRegistration withStatus(CustomerRegistration.Status status, Long id) {
+            return new CustomerRegistration(trackingId, status, id, customer.getEmail());
+        }
+    }
+
+    /**
+     * line of the journal, an accepted registration with all traits including the encrypted password,
+     * or the tracking id of a registration which was stored or failed
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static final class JournalEntry {
+
+        private UUID trackingId;
+        private String idempotencyKey;
+        private String firstName;
+        private String lastName;
+        private Date dateOfBirth;
+        private String email;
+        private String password;
+        private boolean proMember;
+        private boolean finished;
+
+        private static JournalEntry accepted(Registration registration, String encryptedPassword) {
+            Customer customer = registration.customer;
+            return new JournalEntry(registration.trackingId, registration.idempotencyKey, customer.getFirstName(),
+                    customer.getLastName(), customer.getDateOfBirth(), customer.getEmail(), encryptedPassword,
+                    customer.isProMember(), false);
+        }
+
+        private static JournalEntry finished(Registration registration) {
+            JournalEntry entry = new JournalEntry();
+            entry.setTrackingId(registration.trackingId);
+            entry.setFinished(true);
+            return entry;
+        }
+
+        private Registration toRegistration(String password) {
+            return new Registration(trackingId, idempotencyKey,
+                    new Customer(null, firstName, lastName, dateOfBirth, email, password, proMember));
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.config.CustomerRoutingDataSource;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.dto.CustomerSuggestion;
+import CustomerData.customer.event.CustomerChangedEvent;
+import CustomerData.customer.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * in-memory prefix index over the lower-cased first names, last names and emails of all customers for the type-ahead
+ * search, only used if the property customer.search.enabled is set to true (default).
+ * The terms are kept in a sorted skip list, a prefix is a range of it and the first limit customers of the range are the
+ * result in the order of the terms. Every term points to the customers sharing it, a customer is held once
+ * as a CustomerSuggestion, which is also kept by id to find its terms when it changes. Searches don't lock the index, writes are applied one at a time.
+ * The index is loaded at startup and kept up to date from the committed writes of the CustomerService,
+ * writes which bypass the CustomerService aren't seen
+ */
+@Slf4j
+@Component
+public class CustomerSearchIndex {
+
+    //estimated sizes in bytes on a 64-bit JVM with compressed references and compact strings
+    private static final int SUGGESTION_BYTES = 32;
+    private static final int TERM_BYTES = 24 + 8 + 24 + 16;  //skip list node, share of the index levels, Bucket, array header
+    private static final int REFERENCE_BYTES = 4;
+    private static final int ENTRY_BYTES = 32 + 16 + 8;     //hash map node, boxed id, share of the table
+
+    private final CustomerRepository customerRepository;
+    private final boolean enabled;
+
+    private final ConcurrentSkipListMap<String, Bucket> terms = new ConcurrentSkipListMap<>();
+    private final Map<Long, CustomerSuggestion> customers = new ConcurrentHashMap<>();     //the indexed state by id
+    private Set<Long> changedWhileLoading;     //guarded by this, only set while the index is loading
+    private Map<Long, List<CustomerPatch>> patchedWhileLoading;    //guarded by this, only set while the index is loading
+    private volatile boolean loaded;
+
+    /**
+     * constructor to initialize the CustomerSearchIndex, Dependency Injection
+     * @param customerRepository CustomerRepository to load the customers at startup
+     * @param enabled boolean value to decide whether the index is built (customer.search.enabled)
+     */
+    @Autowired
+    public CustomerSearchIndex(CustomerRepository customerRepository,
+                               @Value("${customer.search.enabled:true}") boolean enabled) {
+        this.customerRepository = customerRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * method to check whether searches can be served from the index
+     * @return true if the index is enabled and loaded
+     */
+    public boolean isActive() {
+        return enabled && loaded;
+    }
+
+    /**
+     * method finds the customers with a first name, last name or email starting with the prefix, ignoring the case
+     * @param prefix String value representing the typed prefix
+     * @param limit int value representing the maximum number of results
+     * @return List filled with at most {@param limit} suggestions, ordered by the matching term
+     */
+    public List<CustomerSuggestion> search(String prefix, int limit) {
+        String from = normalize(prefix);
+        Map<Long, CustomerSuggestion> results = new LinkedHashMap<>();
+        for (Bucket bucket : terms.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            bucket.collect(results, limit);
+            if (results.size() >= limit)
+                break;
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * method applies a committed write of the CustomerService to the index. A patch is merged into the indexed
+     * suggestion, a customer patched while the index is loading gets the patch applied when its row is loaded
+     * @param event the event describing the write
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (!enabled)
+            return;
+
+        synchronized (this) {
+            switch (event.getType()) {
+                case CREATED, UPDATED -> {
+                    Customer current = event.getCurrent();
+                    markChangedWhileLoading(event.getId());
+                    put(new CustomerSuggestion(current.getId(), current.getFirstName(), current.getLastName(),
+                            current.getEmail()));
+                }
+                case PATCHED -> {
+                    if (!event.getPatch().changesName())
+                        return;
+                    CustomerSuggestion indexed = customers.get(event.getId());
+                    if (indexed != null) {
+                        markChangedWhileLoading(event.getId());
+                        put(merge(indexed, event.getPatch()));
+                    } else if (patchedWhileLoading != null) {
+                        patchedWhileLoading.computeIfAbsent(event.getId(), id -> new ArrayList<>()).add(event.getPatch());
+                    }
+                }
+                case DELETED -> {
+                    markChangedWhileLoading(event.getId());
+                    remove(event.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * method loads all customers from the primary database at startup, searches go to the database until it is done. Customers written while the
+     * index is loading are taken from the write instead of the database, the loaded row might be older.
+     * Can be called again to rebuild the index after writes which bypassed the CustomerService
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        if (!enabled)
+            return;
+
+        long start = System.nanoTime();
+        synchronized (this) {
+            loaded = false;
+            terms.clear();
+            customers.clear();
+            changedWhileLoading = new HashSet<>();
+            patchedWhileLoading = new HashMap<>();
+        }
+        try (Stream<CustomerSuggestion> rows = CustomerRoutingDataSource.onPrimary(customerRepository::streamSuggestions)) {
+            rows.forEach(customer -> {
+                synchronized (this) {
+                    if (changedWhileLoading.contains(customer.getId()))
+                        return;
+                    for (CustomerPatch patch : patchedWhileLoading.getOrDefault(customer.getId(), List.of()))
+                        customer = merge(customer, patch);
+                    put(customer);
+                }
+            });
+        }
+        synchronized (this) {
+            changedWhileLoading = null;
+            patchedWhileLoading = null;
+            loaded = true;
+        }
+        log.info("Loaded the customer search index in {} ms: {}", (System.nanoTime() - start) / 1_000_000, getStatistics());
+    }
+
+    /**
+     * method estimates the size of the index, the strings are counted once per customer and once per term, so strings
+     * shared between customers make it an upper bound. Walks the whole index
+     * @return Map with the number of customers and terms and the estimated bytes in total and per customer
+     */
+    public Map<String, Number> getStatistics() {
+        long bytes = 0;
+        for (Map.Entry<String, Bucket> term : terms.entrySet()) {
+            bytes += TERM_BYTES + bytesOf(term.getKey());
+            Bucket bucket = term.getValue();
+            synchronized (bucket) {
+                bytes += (long) bucket.customers.length * REFERENCE_BYTES;
+            }
+        }
+        long indexed = 0;
+        for (CustomerSuggestion customer : customers.values()) {
+            indexed++;
+            bytes += SUGGESTION_BYTES + ENTRY_BYTES + bytesOf(customer.getFirstName()) + bytesOf(customer.getLastName())
+                    //an email which already is lower-case is the same instance as its term
+                    + (customer.getEmail() == null || normalize(customer.getEmail()) == customer.getEmail()
+                            ? 0 : bytesOf(customer.getEmail()));
+        }
+
+        Map<String, Number> statistics = new LinkedHashMap<>();
+        statistics.put("customers", indexed);
+        statistics.put("terms", terms.size());
+        statistics.put("estimatedBytes", bytes);
+        statistics.put("estimatedBytesPerCustomer", indexed == 0 ? 0 : bytes / indexed);
+        return statistics;
+    }
+
+    /**
+     * helper method to index the customer under its terms, replaces the entry of a customer with the same id.
+     * The caller holds the monitor of the index
+     * @param customer the suggestion of the customer
+     */
+    private void put(CustomerSuggestion customer) {
+        CustomerSuggestion previous = customers.put(customer.getId(), customer);
+        if (previous != null)
+            removeTerms(previous);
+        for (String term : termsOf(customer.getFirstName(), customer.getLastName(), customer.getEmail()))
+            terms.computeIfAbsent(term, key -> new Bucket()).add(customer);
+    }
+
+    /**
+     * helper method to remove the customer with the id from the index, the caller holds the monitor of the index
+     * @param id long value representing the customer's id
+     */
+    private void remove(long id) {
+        CustomerSuggestion previous = customers.remove(id);
+        if (previous != null)
+            removeTerms(previous);
+    }
+
+    /**
+     * helper method to remove a customer from the buckets of its terms, empty buckets are removed
+     * @param customer the indexed suggestion of the customer
+     */
+    private void removeTerms(CustomerSuggestion customer) {
+        for (String term : termsOf(customer.getFirstName(), customer.getLastName(), customer.getEmail())) {
+            Bucket bucket = terms.get(term);
+            if (bucket != null && bucket.remove(customer.getId()))
+                terms.remove(term);
+        }
+    }
+
+    /**
+     * helper method to remember a write of a customer whose row might still be loaded, the caller holds the monitor
+     */
+    private void markChangedWhileLoading(long id) {
+        if (changedWhileLoading != null)
+            changedWhileLoading.add(id);
+    }
+
+    /**
+     * helper method to apply the name and email fields of a patch to a suggestion
+     */
+    private static CustomerSuggestion merge(CustomerSuggestion customer, CustomerPatch patch) {
+        return new CustomerSuggestion(customer.getId(),
+                patch.getFirstName() != null ? patch.getFirstName() : customer.getFirstName(),
+                patch.getLastName() != null ? patch.getLastName() : customer.getLastName(),
+                patch.getEmail() != null ? patch.getEmail() : customer.getEmail());
+    }
+
+    /**
+     * helper method to get the distinct terms of a customer
+     */
+    private static Set<String> termsOf(String firstName, String lastName, String email) {
+        Set<String> terms = new HashSet<>(4);
+        for (String value : new String[]{firstName, lastName, email})
+            if (value != null && !value.isBlank())
+                terms.add(normalize(value));
+        return terms;
+    }
+
+    /**
+     * helper method to normalize a term or a prefix, returns the same instance if it already is lower-case
+     */
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * helper method to estimate the size of a Latin-1 string
+     */
+    private static long bytesOf(String value) {
+        return value == null ? 0 : 24 + ((16 + value.length() + 7) / 8) * 8;
+    }
+
+    /**
+     * customers sharing one term in the order they were added, a growable array guarded by its monitor
+     */
+    private static final class Bucket {
+
+        private CustomerSuggestion[] customers = new CustomerSuggestion[1];
+        private int size;
+
+        /**
+         * adds the customer, the previous entry of the customer was removed before
+         */
+        synchronized void add(CustomerSuggestion customer) {
+            if (size == customers.length)
+                customers = Arrays.copyOf(customers, size * 2);
+            customers[size++] = customer;
+        }
+
+        /**
+         * removes the entry with the id
+         * @return true if the bucket is empty afterwards
+         */
+        synchronized boolean remove(long id) {
+            for (int i = 0; i < size; i++)
+                if (customers[i].getId() == id) {
+                    System.arraycopy(customers, i + 1, customers, i, size - i - 1);
+                    customers[--size] = null;
+                    break;
+                }
+            return size == 0;
+        }
+
+        /**
+         * adds the entries to the results until they hold limit customers
+         */
+        synchronized void collect(Map<Long, CustomerSuggestion> results, int limit) {
+            for (int i = 0; i < size && results.size() < limit; i++)
+                results.putIfAbsent(customers[i].getId(), customers[i]);
+        }
+    }
+}
@@ -1,41 +1,131 @@
 package CustomerData.customer.service;
 
 import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerBatch;
+import CustomerData.customer.dto.CustomerCriteria;
+import CustomerData.customer.dto.CustomerCursor;
+import CustomerData.customer.dto.CustomerDeleteResult;
+import CustomerData.customer.dto.CustomerPage;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.dto.CustomerStatistics;
+import CustomerData.customer.dto.CustomerSuggestion;
+import CustomerData.customer.dto.CustomerSummary;
+import CustomerData.customer.event.CustomerChangedEvent;
 import CustomerData.customer.exception.CustomerAlreadyExistingException;
+import CustomerData.customer.exception.CustomerBatchException;
+import CustomerData.customer.exception.CustomerCursorException;
 import CustomerData.customer.exception.CustomerNotFoundException;
 import CustomerData.customer.exception.CustomerPasswordTooWeakException;
 import CustomerData.customer.exception.CustomerProMemberException;
+import CustomerData.customer.exception.CustomerSearchException;
+import CustomerData.customer.exception.CustomerVersionConflictException;
+import CustomerData.customer.exception.CustomerVersionRequiredException;
 import CustomerData.customer.repository.CustomerRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Function;
+
+import static CustomerData.customer.repository.CustomerSpecifications.bornBefore;
+import static CustomerData.customer.repository.CustomerSpecifications.bornFrom;
+import static CustomerData.customer.repository.CustomerSpecifications.hasEmail;
+import static CustomerData.customer.repository.CustomerSpecifications.hasFirstName;
+import static CustomerData.customer.repository.CustomerSpecifications.hasLastName;
+import static CustomerData.customer.repository.CustomerSpecifications.hasProMember;
 
 
 @Service
 public class CustomerService {
 
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int DEFAULT_AGE_BUCKET = 10;
+    private static final int MAX_AGE_BUCKET = 150;
+    //the properties of the combined search's sort, the others aren't indexed or not visible
+    private static final Set<String> SORTABLE = Set.of("id", "firstName", "lastName", "dateOfBirth", "email");
+
     private final CustomerRepository customerRepository;
+    private final CustomerCounter customerCounter;
+    private final CustomerCache customerCache;
+    private final CustomerSearchIndex customerSearchIndex;
+    private final CustomerAggregates customerAggregates;
+    private final CustomerEmailFilter customerEmailFilter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBatchSize;
 
     /**
      * constructor to create a CustomerRepositoryException, Dependency Injection
      * @param customerRepository CustomerRepository parameter to initialize the private object attribute
+     * @param customerCounter CustomerCounter serving the counts from memory if the counter mode is enabled
+     * @param customerCache CustomerCache in front of the lookups by id and email
+     * @param customerSearchIndex CustomerSearchIndex serving the prefix search
+     * @param customerAggregates CustomerAggregates serving the statistics from memory
+     * @param customerEmailFilter CustomerEmailFilter answering the lookups of emails without a customer
+     * @param eventPublisher ApplicationEventPublisher to announce every committed write
+     * @param defaultPageSize int value representing the page size if the client doesn't choose one
+     * @param maxPageSize int value representing the largest page size a client can choose
+     * @param maxBatchSize int value representing the most ids or emails a multi-get or bulk delete can name
      */
     @Autowired
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository,
+                           CustomerCounter customerCounter,
+                           CustomerCache customerCache,
+                           CustomerSearchIndex customerSearchIndex,
+                           CustomerAggregates customerAggregates,
+                           CustomerEmailFilter customerEmailFilter,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${customer.page.default-size:100}") int defaultPageSize,
+                           @Value("${customer.page.max-size:1000}") int maxPageSize,
+                           @Value("${customer.batch.max-size:1000}") int maxBatchSize) {
         this.customerRepository = customerRepository;
+        this.customerCounter = customerCounter;
+        this.customerCache = customerCache;
+        this.customerSearchIndex = customerSearchIndex;
+        this.customerAggregates = customerAggregates;
+        this.customerEmailFilter = customerEmailFilter;
+        this.eventPublisher = eventPublisher;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
     }
 
     /**
      * method to get all existing customers from the db
      * @return List of all existing customers
      */
-    public List<Customer> findAll() {
-        return customerRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> findAll() {
+        return customerRepository.findAllSummaries(Sort.by("id"));
+    }
+
+    /**
+     * method to get one keyset page of all existing customers ordered by id
+     * @param cursor String value representing the nextCursor of the previous page, null for the first page
+     * @param size Integer value representing the page size, null for the default page size
+     * @return CustomerPage filled with the customers of the page and the cursor of the next page
+     * @throws CustomerCursorException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CustomerPage<CustomerSummary> findAllPage(String cursor, Integer size) throws CustomerCursorException {
+        long afterId = cursor == null ? Long.MIN_VALUE : CustomerCursor.decode(cursor, false).getId();
+        int pageSize = pageSize(size);
+        List<CustomerSummary> customers = customerRepository.findPageAfterId(afterId, PageRequest.of(0, pageSize + 1));
+        return page(customers, pageSize, false);
     }
+
     /**
      * method to get a specific customer by id
      * @param id the customer's id
@@ -43,8 +133,32 @@ public class CustomerService {
      * @throws CustomerNotFoundException if id does not belong to a customer
      */
     public Customer findById(Long id) throws CustomerNotFoundException {
-        return customerRepository.findById(id)
-                .orElseThrow(() -> new CustomerNotFoundException(id));
+        Customer customer = customerCache.getById(id, key -> customerRepository.findById(key).orElse(null));
+        if (customer == null)
+            throw new CustomerNotFoundException(id);
+
+        return customer;
+    }
+
+    /**
+     * method gets the customers with the ids with one query, ids without a customer are reported instead of failing
+     * @param ids List of the customers' ids, duplicates are resolved once
+     * @return CustomerBatch filled with the found customers ordered by id and the ids which weren't found
+     * @throws CustomerBatchException if more than customer.batch.max-size distinct ids are requested
+     */
+    @Transactional(readOnly = true)
+    public CustomerBatch findByIds(List<Long> ids) throws CustomerBatchException {
+        Set<Long> requested = batch(ids);
+        List<CustomerSummary> customers = requested.isEmpty() ? List.of() : customerRepository.findSummariesByIds(requested);
+
+        Set<Long> found = new HashSet<>();
+        for (CustomerSummary customer : customers)
+            found.add(customer.getId());
+        List<Long> notFound = new ArrayList<>();
+        for (Long id : requested)
+            if (!found.contains(id))
+                notFound.add(id);
+        return new CustomerBatch(customers, notFound);
     }
 
     /**
@@ -54,12 +168,9 @@ public class CustomerService {
      * @return the specific customers stored in a list
      * @throws CustomerNotFoundException if there is no customer with this name
      */
-    public List<Customer> findByName(String firstName, String lastName) throws CustomerNotFoundException {
-        List<Customer> customers = customerRepository.findAll()
-                .stream()
-                .filter(first -> first.getFirstName().equals(firstName))
-                .filter(last -> last.getFirstName().equals(lastName))
-                .toList();
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> findByName(String firstName, String lastName) throws CustomerNotFoundException {
+        List<CustomerSummary> customers = customerRepository.findCustomersByName(firstName, lastName);
 
         if (customers.isEmpty())
             throw new CustomerNotFoundException(firstName, lastName);
@@ -68,20 +179,78 @@ public class CustomerService {
     }
 
     /**
-     * method to find all customers with the specific input email
+     * method finds the customers whose first name, last name or email starts with the prefix for the type-ahead search.
+     * Served from the CustomerSearchIndex, the database is only queried while the index is disabled or loading
+     * @param prefix String value representing the typed prefix
+     * @param limit Integer value representing the maximum number of results, null for 10
+     * @return List filled with at most {@param limit} suggestions, empty if the prefix is blank
+     */
+    @Transactional(readOnly = true)
+    public List<CustomerSuggestion> search(String prefix, Integer limit) {
+        if (prefix == null || prefix.isBlank())
+            return List.of();
+
+        int maxResults = limit == null ? DEFAULT_SEARCH_LIMIT : Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        if (customerSearchIndex.isActive())
+            return customerSearchIndex.search(prefix, maxResults);
+
+        String pattern = prefix.trim().replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        return customerRepository.findSuggestions(pattern, PageRequest.of(0, maxResults));
+    }
+
+    /**
+     * method finds the customers matching all criteria which are set with one query, instead of
+     * intersecting the results of several single-criterion finders. The ages are translated into a
+     * date of birth range like in {@link #findByAgeRange}, both ranges have to match
+     * @param criteria CustomerCriteria holding the criteria, the ones which aren't set are ignored
+     * @param sort Sort deciding the order, customers in the same position are ordered by id
+     * @param limit Integer value representing the maximum number of customers, null for the default page size
+     * @return List filled with the summaries of the matching customers, empty if no customer matches
+     * @throws CustomerSearchException if the sort names a property the search can't be sorted by
+     */
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> findByCriteria(CustomerCriteria criteria, Sort sort, Integer limit) throws CustomerSearchException {
+        for (Sort.Order order : sort)
+            if (!SORTABLE.contains(order.getProperty()))
+                throw new CustomerSearchException(order.getProperty(), String.join(", ", new TreeSet<>(SORTABLE)));
+        if (sort.getOrderFor("id") == null)
+            sort = sort.and(Sort.by("id"));
+
+        LocalDate today = LocalDate.now();
+        Date from = latest(
+                criteria.getMaxAge() == null ? null : startOfDay(today.minusYears(criteria.getMaxAge() + 1L).plusDays(1)),
+                criteria.getBornFrom() == null ? null : startOfDay(criteria.getBornFrom()));
+        Date before = earliest(
+                criteria.getMinAge() == null ? null : startOfDay(today.minusYears(criteria.getMinAge()).plusDays(1)),
+                criteria.getBornTo() == null ? null : startOfDay(criteria.getBornTo().plusDays(1)));
+        if (from != null && before != null && !from.before(before))
+            return List.of();
+
+        Specification<Customer> specification = Specification.where(hasEmail(criteria.getEmail()))
+                .and(hasLastName(criteria.getLastName()))
+                .and(hasFirstName(criteria.getFirstName()))
+                .and(bornFrom(from))
+                .and(bornBefore(before))
+                .and(hasProMember(criteria.getProMember()));
+        return customerRepository.findSummaries(specification, sort, pageSize(limit));
+    }
+
+    /**
+     * method to find all customers with the specific input email, emails the CustomerEmailFilter doesn't contain
+     * aren't looked up
      * @param email String value representing the customer's email adress
      * @return the specific customer of the associated email
      * @throws CustomerNotFoundException if there is no customer with this email
      */
     public Customer findByEmail(String email) throws CustomerNotFoundException {
-        Customer customer = customerRepository.findAll()
-                .stream()
-                .filter(x -> x.getEmail().equals(email))
-                .toList()
-                .get(0);
+        if (!customerEmailFilter.mightExist(email))
+            throw new CustomerNotFoundException(email);
 
-        if (customer == null)
+        Customer customer = customerCache.getByEmail(email, key -> customerRepository.findCustomerByEmail(key).orElse(null));
+        if (customer == null) {
+            customerEmailFilter.falsePositive();
             throw new CustomerNotFoundException(email);
+        }
 
         return customer;
     }
@@ -92,11 +261,9 @@ public class CustomerService {
      * @return List filled with customers who are born at the {@param dob}
      * @throws CustomerNotFoundException if there is no customer with this date of birth
      */
-    public List<Customer> findByDob(Date dob) throws CustomerNotFoundException {
-        List<Customer> customers = customerRepository.findAll()
-                .stream()
-                .filter(customer -> customer.getDateOfBirth().equals(dob))
-                .toList();
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> findByDob(Date dob) throws CustomerNotFoundException {
+        List<CustomerSummary> customers = customerRepository.findCustomersByDateOfBirth(dob);
 
         if (customers.isEmpty())
             throw new CustomerNotFoundException(dob);
@@ -110,11 +277,9 @@ public class CustomerService {
      * @return List filled with all customers who are {@param age} years old
      * @throws CustomerNotFoundException if there is no customer with the input age
      */
-    public List<Customer> findByAge(int age) throws CustomerNotFoundException {
-        List<Customer> customers = customerRepository.findAll()
-                .stream()
-                .filter((customer -> customer.getAge() == age))
-                .toList();
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> findByAge(int age) throws CustomerNotFoundException {
+        List<CustomerSummary> customers = findBornBetween(age, age);
 
         if (customers.isEmpty())
             throw new CustomerNotFoundException(age);
@@ -123,16 +288,31 @@ public class CustomerService {
 
     }
 
+    /**
+     * method finds all customers whose age lies in the range, the ages are translated into a date of birth range
+     * @param minAge int value representing the minimum age (inclusive)
+     * @param maxAge int value representing the maximum age (inclusive)
+     * @return List filled with all customers who are between {@param minAge} and {@param maxAge} years old
+     * @throws CustomerNotFoundException if there is no customer in the age range
+     */
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> findByAgeRange(int minAge, int maxAge) throws CustomerNotFoundException {
+        List<CustomerSummary> customers = minAge <= maxAge ? findBornBetween(minAge, maxAge) : List.of();
+
+        if (customers.isEmpty())
+            throw new CustomerNotFoundException(minAge, maxAge);
+
+        return customers;
+    }
+
     /**
      * method finds all customers who have a pro-membership
      * @return List filled with all pro-member customers
      * @throws CustomerProMemberException if there is no customer with a pro-membership
      */
-    public List<Customer> findAllProMembers() throws CustomerProMemberException {
-        List<Customer> customers = customerRepository.findAll()
-                .stream()
-                .filter(Customer::isProMember)
-                .toList();
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> findAllProMembers() throws CustomerProMemberException {
+        List<CustomerSummary> customers = customerRepository.findCustomersByProMember(true);
 
         if (customers.isEmpty())
             throw new CustomerProMemberException(true);
@@ -145,11 +325,9 @@ public class CustomerService {
      * @return List filled with all non pro-member customers
      * @throws CustomerProMemberException if there is no customer without a pro-membership
      */
-    public List<Customer> findAllNonProMembers() throws CustomerProMemberException {
-        List<Customer> customers = customerRepository.findAll()
-                .stream()
-                .filter(customer -> !customer.isProMember())
-                .toList();
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> findAllNonProMembers() throws CustomerProMemberException {
+        List<CustomerSummary> customers = customerRepository.findCustomersByProMember(false);
 
         if (customers.isEmpty())
             throw new CustomerProMemberException(false);
@@ -158,23 +336,56 @@ public class CustomerService {
     }
 
     /**
-     * method sorts all existing customers by their age (descending or ascending) and returns the sorted list
+     * method sorts all existing customers by their age (descending or ascending) and returns the sorted list,
+     * the database sorts on the (date_of_birth, id) index
      * @param b boolean parameter to decide in which order the list should be sorted
      * @return list filled with customers sorted bei der age
      */
-    public List<Customer> sortByDob(boolean b) {
+    @Transactional(readOnly = true)
+    public List<CustomerSummary> sortByDob(boolean b) {
         //b true -> oldest first
         //b false -> youngest first
-        if(b)
-        return customerRepository.findAll()
-                .stream()
-                .sorted(Comparator.comparing(Customer::getDateOfBirth).reversed())
-                .toList();
+        Sort.Direction direction = b ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return customerRepository.findAllSummaries(Sort.by(direction, "dateOfBirth", "id"));
+    }
 
-        return customerRepository.findAll()
-                .stream()
-                .sorted(Comparator.comparing(Customer::getDateOfBirth))
-                .toList();
+    /**
+     * method returns one keyset page of the customers sorted by their age, keyed on (dateOfBirth, id).
+     * Like {@link #sortByDob(boolean)} the customers without a date of birth come first if the oldest are first
+     * and last if the youngest are first, ordered by id in the same direction
+     * @param b boolean parameter to decide in which order the pages are sorted, true for the oldest first
+     * @param cursor String value representing the nextCursor of the previous page, null for the first page
+     * @param size Integer value representing the page size, null for the default page size
+     * @return CustomerPage filled with the customers of the page and the cursor of the next page
+     * @throws CustomerCursorException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CustomerPage<CustomerSummary> sortByDobPage(boolean b, String cursor, Integer size) throws CustomerCursorException {
+        int pageSize = pageSize(size);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        CustomerCursor position = cursor == null ? null : CustomerCursor.decode(cursor, true);
+        List<CustomerSummary> customers;
+
+        if (b && (position == null || position.getDateOfBirth() == null)) {
+            //the customers without a date of birth come first, then the oldest
+            customers = new ArrayList<>(customerRepository.findUndatedPageAfterId(
+                    position == null ? Long.MIN_VALUE : position.getId(), limit));
+            if (customers.size() <= pageSize)
+                customers.addAll(customerRepository.findFirstPageOldestFirst(PageRequest.of(0, pageSize + 1 - customers.size())));
+        } else if (b) {
+            customers = customerRepository.findPageOldestFirst(position.getDateOfBirth(), position.getId(), limit);
+        } else if (position != null && position.getDateOfBirth() == null) {
+            customers = customerRepository.findUndatedPageBeforeId(position.getId(), limit);
+        } else {
+            //the youngest come first, then the customers without a date of birth
+            customers = new ArrayList<>(position == null ? customerRepository.findFirstPageYoungestFirst(limit)
+                    : customerRepository.findPageYoungestFirst(position.getDateOfBirth(), position.getId(), limit));
+            if (customers.size() <= pageSize)
+                customers.addAll(customerRepository.findUndatedPageBeforeId(Long.MAX_VALUE,
+                        PageRequest.of(0, pageSize + 1 - customers.size())));
+        }
+
+        return page(customers, pageSize, true);
     }
 
     /**
@@ -182,9 +393,10 @@ public class CustomerService {
      * @return int value representing the number of customers
      */
     public Long getNumberOfCustomers() {
-        return customerRepository.findAll()
-                .stream()
-                .count();
+        if (customerCounter.isActive())
+            return customerCounter.getNumberOfCustomers();
+
+        return customerRepository.count();
     }
 
     /**
@@ -192,10 +404,10 @@ public class CustomerService {
      * @return int value representing the number of pro-members
      */
     public Long getNumberOfProMembers() {
-        return customerRepository.findAll()
-                .stream()
-                .filter(Customer::isProMember)
-                .count();
+        if (customerCounter.isActive())
+            return customerCounter.getNumberOfProMembers();
+
+        return customerRepository.countCustomersByProMember(true);
     }
 
     /**
@@ -203,30 +415,87 @@ public class CustomerService {
      * @return int value representing the number of non pro-members
      */
     public Long getNumberOfNonProMembers() {
-        return customerRepository.findAll()
-                .stream()
-                .filter(customer -> !customer.isProMember())
-                .count();
+        if (customerCounter.isActive())
+            return customerCounter.getNumberOfNonProMembers();
+
+        return customerRepository.countCustomersByProMember(false);
+    }
+
+    /**
+     * method returns the age histogram, the pro-members per age bucket, the birth months and the age range of all
+     * customers. Served from the CustomerAggregates, the database only groups the customers on request or while
+     * the aggregates are disabled or outdated
+     * @param bucketSize Integer value representing the years per age bucket, null for 10, at most 150
+     * @param recompute boolean value, true to compute the statistics in the database and cross-check the aggregates
+     * @return CustomerStatistics of all customers
+     */
+    public CustomerStatistics getStatistics(Integer bucketSize, boolean recompute) {
+        int years = bucketSize == null ? DEFAULT_AGE_BUCKET : Math.max(1, Math.min(bucketSize, MAX_AGE_BUCKET));
+        return customerAggregates.getStatistics(years, recompute);
     }
 
     /**
      * method deletes the customer with the specific {@param id}  from the database
      * @param id Long value representing the customers id
+     * @throws CustomerNotFoundException if there is no customer with this id
      */
-    public void deleteById(Long id) {
-        customerRepository.deleteById(id);
+    @Transactional
+    public void deleteById(Long id) throws CustomerNotFoundException {
+        Customer customer = customerRepository.findById(id)
+                .orElseThrow(() -> new CustomerNotFoundException(id));
+        customerRepository.delete(customer);
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(customer));
     }
 
     /**
-     * method deletes the customer with the specific {@param email}  from the database
+     * method deletes the customer with the specific {@param email}  from the database, emails the CustomerEmailFilter
+     * doesn't contain aren't looked up
      * @param email String value representing the customers email
+     * @throws CustomerNotFoundException if there is no customer with this email
      */
+    @Transactional
     public void deleteByEmail(String email) throws CustomerNotFoundException {
-        Optional<Customer> customerOptional = customerRepository.findCustomerByEmail(email);
-        if (customerOptional.isPresent())
-            customerRepository.deleteById(customerOptional.get().getId());
-        else
+        if (!customerEmailFilter.mightExist(email))
             throw new CustomerNotFoundException(email);
+
+        Customer customer = customerRepository.findCustomerByEmail(email).orElse(null);
+        if (customer == null) {
+            customerEmailFilter.falsePositive();
+            throw new CustomerNotFoundException(email);
+        }
+        customerRepository.delete(customer);
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(customer));
+    }
+
+    /**
+     * method deletes the customers with the ids, they are locked with one SELECT and removed with one DELETE
+     * @param ids List of the customers' ids, duplicates are deleted once
+     * @return CustomerDeleteResult with the deleted ids and the ids which weren't found
+     * @throws CustomerBatchException if more than customer.batch.max-size distinct ids are sent
+     */
+    @Transactional
+    public CustomerDeleteResult<Long> deleteByIds(List<Long> ids) throws CustomerBatchException {
+        Set<Long> requested = batch(ids);
+        List<Customer> customers = requested.isEmpty() ? List.of() : customerRepository.lockCustomersByIds(requested);
+        return deleteAll(requested, customers, Customer::getId);
+    }
+
+    /**
+     * method deletes the customers with the emails, they are locked with one SELECT and removed with one DELETE.
+     * Emails the CustomerEmailFilter doesn't contain aren't selected, the SELECT is skipped if none is left
+     * @param emails List of the customers' emails, duplicates are deleted once
+     * @return CustomerDeleteResult with the deleted emails and the emails which weren't found
+     * @throws CustomerBatchException if more than customer.batch.max-size distinct emails are sent
+     */
+    @Transactional
+    public CustomerDeleteResult<String> deleteByEmails(List<String> emails) throws CustomerBatchException {
+        Set<String> requested = batch(emails);
+        List<String> candidates = new ArrayList<>();
+        for (String email : requested)
+            if (customerEmailFilter.mightExist(email))
+                candidates.add(email);
+        List<Customer> customers = candidates.isEmpty() ? List.of() : customerRepository.lockCustomersByEmails(candidates);
+        return deleteAll(requested, customers, Customer::getEmail);
     }
 
     /**
@@ -235,11 +504,16 @@ public class CustomerService {
      * @throws CustomerAlreadyExistingException if there is already a customer with the same id/email in the database
      */
     public void addNew(Customer customer) throws CustomerAlreadyExistingException {
-        Optional<Customer> customerOptional = customerRepository.findCustomerByEmail(customer.getEmail());
-        if(customerOptional.isPresent())
-            throw new CustomerAlreadyExistingException(customer.getEmail());
-        else
-            customerRepository.save(customer);
+        Customer saved;
+        try {
+            //the unique email index decides, no SELECT before the INSERT
+            saved = customerRepository.saveAndFlush(customer);
+        } catch (DataIntegrityViolationException e) {
+            if (CustomerAlreadyExistingException.isEmailTaken(e))
+                throw new CustomerAlreadyExistingException(customer.getEmail());
+            throw e;
+        }
+        eventPublisher.publishEvent(CustomerChangedEvent.created(saved));
     }
 
     /**
@@ -247,7 +521,6 @@ public class CustomerService {
      * @param Id Long value representing the id
      * @param firstName String value representing the firstname
      * @param lastName String value representing the lastname
-     * @param age int value representing the age
      * @param dateOfBirth Date value representing the date of birth
      * @param email String value representing the email
      * @param password String value representing the password
@@ -256,17 +529,17 @@ public class CustomerService {
      * @throws CustomerNotFoundException if there is no customers with the specific id
      * @throws CustomerPasswordTooWeakException if the new chosen password is to week
      */
-    @Transactional
+    @Transactional(rollbackFor = CustomerPasswordTooWeakException.class)
     public void update(Long id,
                        String firstName,
                        String lastName,
-                       int age,
                        Date dateOfBirth,
                        String email,
                        String password,
                        boolean proMember) throws CustomerNotFoundException, CustomerAlreadyExistingException, CustomerPasswordTooWeakException {
         Customer customer = customerRepository.findById(id)
                 .orElseThrow(() -> new CustomerNotFoundException(id));
+        Customer previous = customer.toBuilder().build();
 
         if(firstName != null && firstName.length() > 0 && !Objects.equals(customer.getFirstName(), firstName)) {
             customer.setFirstName(firstName);
@@ -274,18 +547,11 @@ public class CustomerService {
         if(lastName != null && lastName.length() > 0 && !Objects.equals(customer.getLastName(), lastName)) {
             customer.setLastName(lastName);
         }
-        if(age > 0 && !Objects.equals(customer.getAge(), age)){
-            customer.setAge(age);
-        }
-        if(dateOfBirth != null && dateOfBirth.before(Date.from(Instant.from(LocalDateTime.now())))){
+        if(dateOfBirth != null && dateOfBirth.before(new Date())){
             customer.setDateOfBirth(dateOfBirth);
         }
 
         if(email != null && email.length() > 0 && !Objects.equals(customer.getEmail(), email)) {
-            Optional<Customer> customerOptional = customerRepository.findCustomerByEmail(email);
-            if(customerOptional.isPresent()) {
-                throw new CustomerAlreadyExistingException(email);
-            }
             customer.setEmail(email);
         }
 
@@ -300,5 +566,177 @@ public class CustomerService {
             customer.setProMember(proMember);
         }
 
+        try {
+            //the unique email index decides whether the new email is taken
+            customerRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            if (CustomerAlreadyExistingException.isEmailTaken(e))
+                throw new CustomerAlreadyExistingException(email);
+            throw e;
+        }
+
+        eventPublisher.publishEvent(CustomerChangedEvent.updated(previous, customer));
+    }
+
+    /**
+     * method writes the fields which are set in the patch with a single UPDATE, the customer isn't loaded before.
+     * The update only matches if the customer still has the version of the patch, so concurrent writes can't
+     * overwrite each other. A date of birth in the future is ignored like in {@link #update}
+     * @param id Long value representing the id
+     * @param patch CustomerPatch holding the fields to write and the version they are based on
+     * @throws CustomerAlreadyExistingException if the new chosen email is already existing
+     * @throws CustomerNotFoundException if there is no customers with the specific id
+     * @throws CustomerPasswordTooWeakException if the new chosen password is to week
+     * @throws CustomerVersionConflictException if the customer was written since the version of the patch
+     * @throws CustomerVersionRequiredException if the patch has no version
+     */
+    @Transactional(rollbackFor = CustomerPasswordTooWeakException.class)
+    public void patch(Long id, CustomerPatch patch) throws CustomerNotFoundException, CustomerAlreadyExistingException,
+            CustomerPasswordTooWeakException, CustomerVersionConflictException, CustomerVersionRequiredException {
+        if (patch.getVersion() == null)
+            throw new CustomerVersionRequiredException(id);
+        if (patch.getPassword() != null && patch.getPassword().length() < 15)
+            throw new CustomerPasswordTooWeakException(patch.getPassword());
+        if (patch.getFirstName() != null && patch.getFirstName().isEmpty())
+            patch.setFirstName(null);
+        if (patch.getLastName() != null && patch.getLastName().isEmpty())
+            patch.setLastName(null);
+        if (patch.getEmail() != null && patch.getEmail().isEmpty())
+            patch.setEmail(null);
+        if (patch.getDateOfBirth() != null && !patch.getDateOfBirth().before(new Date()))
+            patch.setDateOfBirth(null);
+
+        int updated;
+        try {
+            updated = customerRepository.patch(id, patch.getVersion(), patch);
+        } catch (DataIntegrityViolationException e) {
+            if (CustomerAlreadyExistingException.isEmailTaken(e))
+                throw new CustomerAlreadyExistingException(patch.getEmail());
+            throw e;
+        }
+
+        if (updated == 0) {
+            //only a failed patch pays for the lookup which tells a missing customer from a newer version
+            if (!customerRepository.existsById(id))
+                throw new CustomerNotFoundException(id);
+            throw new CustomerVersionConflictException(id, patch.getVersion());
+        }
+
+        eventPublisher.publishEvent(CustomerChangedEvent.patched(id, patch));
+    }
+
+    /**
+     * helper method to check the size of a batch
+     * @param keys List of the requested ids or emails, may be null or contain nulls
+     * @return Set of the distinct keys in the order of the request
+     * @throws CustomerBatchException if there are more than customer.batch.max-size distinct keys
+     */
+    private <K> Set<K> batch(List<K> keys) throws CustomerBatchException {
+        Set<K> requested = new LinkedHashSet<>();
+        if (keys != null)
+            for (K key : keys)
+                if (key != null)
+                    requested.add(key);
+        if (requested.size() > maxBatchSize)
+            throw new CustomerBatchException(requested.size(), maxBatchSize);
+        return requested;
+    }
+
+    /**
+     * helper method to delete the locked customers with one statement and announce every delete
+     * @param requested Set of the requested keys
+     * @param customers List of the locked customers matching the keys
+     * @param key Function returning the key of a customer
+     * @return CustomerDeleteResult splitting the requested keys into deleted and not found
+     */
+    private <K> CustomerDeleteResult<K> deleteAll(Set<K> requested, List<Customer> customers, Function<Customer, K> key) {
+        Set<K> found = new HashSet<>();
+        List<Long> ids = new ArrayList<>();
+        for (Customer customer : customers) {
+            found.add(key.apply(customer));
+            ids.add(customer.getId());
+        }
+        if (!ids.isEmpty())
+            customerRepository.deleteCustomersByIds(ids);
+        for (Customer customer : customers)
+            eventPublisher.publishEvent(CustomerChangedEvent.deleted(customer));
+
+        List<K> deleted = new ArrayList<>();
+        List<K> notFound = new ArrayList<>();
+        for (K requestedKey : requested)
+            (found.contains(requestedKey) ? deleted : notFound).add(requestedKey);
+        return new CustomerDeleteResult<>(deleted, notFound);
+    }
+
+    /**
+     * helper method to load the customers by age, someone is n years old from the day after their (n+1)th birthday
+     * ago up to and including their nth birthday ago
+     * @param minAge int value representing the minimum age (inclusive)
+     * @param maxAge int value representing the maximum age (inclusive)
+     * @return List filled with the customers in the age range
+     */
+    private List<CustomerSummary> findBornBetween(int minAge, int maxAge) {
+        LocalDate today = LocalDate.now();
+        return customerRepository.findCustomersBornBetween(
+                startOfDay(today.minusYears(maxAge + 1L).plusDays(1)),
+                startOfDay(today.minusYears(minAge).plusDays(1)));
+    }
+
+    /**
+     * helper method to convert a day into the Date of its start in the default time zone
+     * @param day LocalDate value representing the day
+     * @return Date value representing the midnight the day starts
+     */
+    private static Date startOfDay(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * helper method to pick the later of two range starts
+     * @return the later Date, null if both are null
+     */
+    private static Date latest(Date first, Date second) {
+        if (first == null || second == null)
+            return first == null ? second : first;
+        return first.after(second) ? first : second;
+    }
+
+    /**
+     * helper method to pick the earlier of two range ends
+     * @return the earlier Date, null if both are null
+     */
+    private static Date earliest(Date first, Date second) {
+        if (first == null || second == null)
+            return first == null ? second : first;
+        return first.before(second) ? first : second;
+    }
+
+    /**
+     * helper method to limit the requested page size
+     * @param size Integer value representing the requested page size, null for the default page size
+     * @return int value representing the page size between 1 and the maximum page size
+     */
+    private int pageSize(Integer size) {
+        if (size == null)
+            return defaultPageSize;
+
+        return Math.max(1, Math.min(size, maxPageSize));
+    }
+
+    /**
+     * helper method to cut a keyset page which was loaded with one additional row
+     * @param customers List filled with up to pageSize + 1 customers
+     * @param pageSize int value representing the page size
+     * @param byDob boolean value, true if the page is keyed on (dateOfBirth, id)
+     * @return CustomerPage with a nextCursor if the additional row exists
+     */
+    private CustomerPage<CustomerSummary> page(List<CustomerSummary> customers, int pageSize, boolean byDob) {
+        if (customers.size() <= pageSize)
+            return new CustomerPage<>(customers, null);
+
+        List<CustomerSummary> content = customers.subList(0, pageSize);
+        CustomerSummary last = content.get(pageSize - 1);
+        CustomerCursor next = new CustomerCursor(byDob ? last.getDateOfBirth() : null, last.getId(), byDob);
+        return new CustomerPage<>(content, next.encode());
     }
 }
@@ -0,0 +1,157 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.event.CustomerChangedEvent;
+import CustomerData.customer.repository.CustomerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDate;
+
+/**
+ * version of the customer table which moves forward on every committed write of the CustomerService.
+ * The read endpoints derive their ETag from it, so a poll can be answered without reading the customer table.
+ * The version is stored in the one-row table customer_table_version of the primary database and shared by all
+ * instances of the api, every instance moves it with its own writes and reads it for every tag.
+ * Writes which bypass the CustomerService, e.g. JDBC writes, don't move it. With read replicas a body read right
+ * after a write might be older than the version, so no tag is handed out until the replicas are assumed to have
+ * caught up, counted from the moment this instance saw the version change
+ */
+@Component
+public class CustomerTableVersion {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerRepository customerRepository;
+    private final long replicationLagNanos;
+    private volatile long changedAt;
+    private volatile long seen = -1;
+
+    /**
+     * constructor to initialize the CustomerTableVersion, Dependency Injection
+     * @param jdbcTemplate JdbcTemplate to read and move the shared version
+     * @param customerRepository CustomerRepository to flush the customer changes before the version is moved
+     * @param replicas String value representing the JDBC urls of the read replicas, empty without replicas
+     * @param replicationLag Duration after a write in which the replicas might not have applied it yet
+     */
+    @Autowired
+    public CustomerTableVersion(JdbcTemplate jdbcTemplate, CustomerRepository customerRepository,
+                                @Value("${customer.datasource.replicas:}") String replicas,
+                                @Value("${customer.datasource.read-your-writes:5s}") Duration replicationLag) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerRepository = customerRepository;
+        this.replicationLagNanos = replicas.isBlank() ? 0 : replicationLag.toNanos();
+        this.changedAt = System.nanoTime() - replicationLagNanos;
+    }
+
+    /**
+     * method creates the table of the shared version if no instance created it yet. The first version is the
+     * current time, so a table created again doesn't hand out the tags of the dropped one
+     */
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS customer_table_version (id INT NOT NULL PRIMARY KEY, " +
+                "version BIGINT NOT NULL)");
+        try {
+            jdbcTemplate.update("INSERT INTO customer_table_version (id, version) SELECT 1, ? FROM DUAL " +
+                    "WHERE NOT EXISTS (SELECT * FROM customer_table_version WHERE id = 1)", System.currentTimeMillis());
+        } catch (DuplicateKeyException e) {
+            //another instance inserted it at the same time
+        }
+    }
+
+    /**
+     * method moves the shared version forward once per transaction of the CustomerService, however many customers
+     * it writes. The first event of a transaction registers a synchronization which moves the version right before
+     * the commit, so the version row is only locked while the write commits and no version is lost if it fails.
+     * Without a transaction the version is moved right away
+     * @param event the event describing the write
+     */
+    @EventListener
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment();
+            return;
+        }
+        if (!TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new VersionSynchronization());
+        }
+    }
+
+    /**
+     * method reads the shared version from the primary database
+     * @return long value representing the current version
+     */
+    public long getVersion() {
+        Long version = jdbcTemplate.queryForObject("SELECT version FROM customer_table_version WHERE id = 1", Long.class);
+        long current = version == null ? 0 : version;
+        if (current != seen) {
+            if (seen != -1)
+                changedAt = System.nanoTime();  //written by another instance
+            seen = current;
+        }
+        return current;
+    }
+
+    /**
+     * method to check whether every read sees the current version
+     * @return true if there are no replicas or the last write is older than the replication lag
+     */
+    public boolean isReplicated() {
+        return System.nanoTime() - changedAt >= replicationLagNanos;
+    }
+
+    /**
+     * method to build the weak entity tag of the read endpoints. The current day is part of the tag,
+     * because the ages of the customers change at midnight without any write
+     * @return String value representing the quoted entity tag
+     */
+    public String getETag() {
+        return "W/\"" + getVersion() + "-" + LocalDate.now().toEpochDay() + "\"";
+    }
+
+    /**
+     * helper method to move the shared version forward. The pending customer changes are flushed first,
+     * every write locks the customer rows before the version row
+     */
+    private void increment() {
+        changedAt = System.nanoTime();
+        customerRepository.flush();
+        jdbcTemplate.update("UPDATE customer_table_version SET version = version + 1 WHERE id = 1");
+    }
+
+    /**
+     * moves the version before the commit of the transaction it was registered for. The transaction is marked by
+     * binding the CustomerTableVersion as a resource, which is unbound while the transaction is suspended,
+     * so a nested transaction moves the version itself
+     */
+    private class VersionSynchronization implements TransactionSynchronization {
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(CustomerTableVersion.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(CustomerTableVersion.this, Boolean.TRUE);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            increment();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CustomerTableVersion.this);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package CustomerData.customer.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerAdmissionLimitTests {
+
+    @Test
+    void reserveIsKeptForCheapRequests() {
+        CustomerAdmissionLimit limit = new CustomerAdmissionLimit(4, 1, 10, 0.9, 0.25);
+
+        for (int i = 0; i < 3; i++)
+            assertTrue(limit.tryAcquire(false));
+        assertFalse(limit.tryAcquire(false));
+        assertTrue(limit.tryAcquire(true));
+        assertFalse(limit.tryAcquire(true));
+        assertEquals(4, limit.getInFlight());
+    }
+
+    @Test
+    void limitShrinksOnCongestionAndGrowsBackUnderLoad() {
+        CustomerAdmissionLimit limit = new CustomerAdmissionLimit(20, 2, 40, 0.9, 0.25);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limit.tryAcquire(true));
+            limit.release(true);
+        }
+        assertEquals(2, limit.getLimit());
+
+        for (int round = 0; round < 100; round++) {
+            int admitted = 0;
+            while (limit.tryAcquire(true))
+                admitted++;
+            for (int i = 0; i < admitted; i++)
+                limit.release(false);
+        }
+        assertTrue(limit.getLimit() >= 20, "limit " + limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void lightlyUsedLimitDoesNotGrow() {
+        CustomerAdmissionLimit limit = new CustomerAdmissionLimit(10, 1, 40, 0.9, 0.25);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire(false));
+            limit.release(false);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+}
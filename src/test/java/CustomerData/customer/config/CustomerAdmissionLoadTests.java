@@ -0,0 +1,134 @@
+package CustomerData.customer.config;
+
+import CustomerData.CustomerDataApplication;
+import CustomerData.customer.Customer;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * sends 200 list scans at once to an api whose database takes 50ms per statement, with and without admission control.
+ * Without it every request waits for one of the 4 pooled connections, with it the excess is rejected right away
+ * and the admitted requests finish in a bounded time, while cached byId reads sent during the load are still admitted.
+ * Run with ./gradlew loadTest
+ */
+@Tag("load")
+class CustomerAdmissionLoadTests {
+
+    private static final String AUTHORIZATION = "Basic " + Base64.getEncoder()
+            .encodeToString("load:load".getBytes(StandardCharsets.UTF_8));
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void excessLoadIsShedAndAdmittedRequestsStayFast() throws Exception {
+        Result unlimited = scanUnderLoad(false);
+        Result admitted = scanUnderLoad(true);
+
+        System.out.printf("slowest list scan: %d ms without admission control, %d ms admitted with %d of %d rejected "
+                        + "in at most %d ms%n", unlimited.slowestOkMillis, admitted.slowestOkMillis, admitted.rejected,
+                admitted.rejected + admitted.ok, admitted.slowestRejectedMillis);
+        assertEquals(0, unlimited.rejected);
+        assertTrue(admitted.rejected > 0);
+        assertTrue(admitted.slowestOkMillis * 2 < unlimited.slowestOkMillis);
+        assertTrue(admitted.slowestRejectedMillis < admitted.slowestOkMillis);
+        assertEquals(admitted.cachedReads, admitted.cachedReadsOk);
+    }
+
+    /**
+     * helper method to start the application and send the list scans and cached reads at once
+     * @param admission boolean value, true to enable the admission control
+     * @return Result of the requests
+     */
+    private Result scanUnderLoad(boolean admission) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CustomerDataApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=250",
+                        "customer.admission.enabled=" + admission,
+                        "spring.datasource.hikari.maximum-pool-size=4",
+                        "spring.datasource.hikari.connection-timeout=60000",
+                        "spring.datasource.driver-class-name=" + SlowDriver.class.getName(),
+                        "spring.datasource.url=jdbc:slow:h2:mem:admission" + admission,
+                        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.security.user.name=load",
+                        "spring.security.user.password=load")
+                .run()) {
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/api/v1/customer/";
+            Long id = context.getBean(CustomerRepository.class).save(new Customer(null, "Load", "Test",
+                    new Date(0), "load@example.com", "averyverystrongpassword", false)).getId();
+            assertEquals(200, send(base + "get/byId/" + id).statusCode());     //fills the cache
+
+            List<CompletableFuture<long[]>> scans = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+                scans.add(timed(base + "get/all"));
+            Thread.sleep(200);
+
+            Result result = new Result();
+            for (int i = 0; i < 20; i++) {
+                result.cachedReads++;
+                if (send(base + "get/byId/" + id).statusCode() == 200)
+                    result.cachedReadsOk++;
+            }
+            for (CompletableFuture<long[]> scan : scans) {
+                long[] response = scan.join();
+                if (response[0] == 200) {
+                    result.ok++;
+                    result.slowestOkMillis = Math.max(result.slowestOkMillis, response[1]);
+                } else {
+                    assertEquals(503, response[0]);
+                    assertEquals(1, response[2]);
+                    result.rejected++;
+                    result.slowestRejectedMillis = Math.max(result.slowestRejectedMillis, response[1]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * helper method to send a request and measure it
+     * @return CompletableFuture of the status, the milliseconds until the response and whether it had a Retry-After
+     */
+    private CompletableFuture<long[]> timed(String uri) {
+        long start = System.nanoTime();
+        return client.sendAsync(request(uri), HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> new long[]{response.statusCode(), (System.nanoTime() - start) / 1_000_000,
+                        response.headers().firstValue("Retry-After").isPresent() ? 1 : 0});
+    }
+
+    private HttpResponse<String> send(String uri) throws Exception {
+        return client.send(request(uri), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest request(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).header("Authorization", AUTHORIZATION).build();
+    }
+
+    private static final class Result {
+        private int ok;
+        private int rejected;
+        private long slowestOkMillis;
+        private long slowestRejectedMillis;
+        private int cachedReads;
+        private int cachedReadsOk;
+    }
+}
@@ -0,0 +1,81 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "customer.migration.age.enabled=true")
+class CustomerAgeMigrationTests {
+
+    @Autowired
+    private CustomerAgeMigration customerAgeMigration;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        //the column as the previous release mapped it
+        jdbcTemplate.execute("ALTER TABLE customer ADD COLUMN age INT NOT NULL");
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+        jdbcTemplate.execute("ALTER TABLE customer DROP COLUMN IF EXISTS age");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS customer_schema_version");
+    }
+
+    @Test
+    void backfillsMissingDatesOfBirthAndKeepsTheAgeColumn() {
+        Timestamp twentyYearsAgo = Timestamp.valueOf(LocalDate.now().minusYears(20).minusDays(1).atStartOfDay());
+        jdbcTemplate.update("INSERT INTO customer (id, first_name, last_name, age, date_of_birth, email, password, is_pro_member) "
+                + "VALUES (100001, 'Only', 'Age', 40, NULL, 'only-age@example.com', 'averyverystrongpassword', FALSE), "
+                + "(100002, 'Both', 'Age', 20, ?, 'both@example.com', 'averyverystrongpassword', FALSE)", twentyYearsAgo);
+
+        customerAgeMigration.migrate();
+
+        assertEquals(40, customerRepository.findById(100001L).map(Customer::getAge).orElseThrow());
+        assertEquals(20, customerRepository.findById(100002L).map(Customer::getAge).orElseThrow());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer_schema_version WHERE version = ?",
+                Integer.class, CustomerAgeMigration.VERSION));
+        //the column stays for the instances still writing it, the new mapping can insert without it
+        customerRepository.save(new Customer(null, "New", "Customer", new Date(0), "new@example.com",
+                "averyverystrongpassword", false));
+        assertNull(jdbcTemplate.queryForObject("SELECT age FROM customer WHERE email = 'new@example.com'", Integer.class));
+
+        //applied migrations aren't run again
+        jdbcTemplate.update("UPDATE customer SET date_of_birth = NULL WHERE id = 100001");
+        customerAgeMigration.migrate();
+        assertNull(jdbcTemplate.queryForObject("SELECT date_of_birth FROM customer WHERE id = 100001", Timestamp.class));
+    }
+
+    @Test
+    void staleAgesStopTheMigration() {
+        Timestamp twentyYearsAgo = Timestamp.valueOf(LocalDate.now().minusYears(20).minusDays(1).atStartOfDay());
+        jdbcTemplate.update("INSERT INTO customer (id, first_name, last_name, age, date_of_birth, email, password, is_pro_member) "
+                + "VALUES (100001, 'Only', 'Age', 40, NULL, 'only-age@example.com', 'averyverystrongpassword', FALSE), "
+                + "(100002, 'Stale', 'Age', 19, ?, 'stale-age@example.com', 'averyverystrongpassword', FALSE)", twentyYearsAgo);
+
+        assertThrows(IllegalStateException.class, () -> customerAgeMigration.migrate());
+
+        assertNull(jdbcTemplate.queryForObject("SELECT date_of_birth FROM customer WHERE id = 100001", Timestamp.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer_schema_version", Integer.class));
+    }
+}
@@ -0,0 +1,26 @@
+package CustomerData.customer.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CustomerDatabaseBulkheadTests {
+
+    @Test
+    void waitingForAPermitTimesOut() throws Exception {
+        CustomerDatabaseBulkhead bulkhead = new CustomerDatabaseBulkhead(
+                new DriverManagerDataSource("jdbc:h2:mem:bulkhead"), 1, 50);
+
+        try (Connection held = bulkhead.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, bulkhead::getConnection);
+            assertEquals(0, bulkhead.getAvailablePermits());
+        }
+        assertEquals(1, bulkhead.getAvailablePermits());
+        bulkhead.getConnection().close();
+    }
+}
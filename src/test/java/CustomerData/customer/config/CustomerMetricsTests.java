@@ -0,0 +1,60 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "customer.cache.enabled=false",
+        "management.endpoints.web.exposure.include=prometheus"
+})
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@WithMockUser
+class CustomerMetricsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void scrapeContainsEndpointRepositoryRowsPoolAndExceptionMeters() throws Exception {
+        for (int i = 0; i < 3; i++)
+            customerRepository.save(new Customer(null, "Metric" + i, "Test", new Date(0),
+                    "metric" + i + "@example.com", "averyverystrongpassword", false));
+
+        mockMvc.perform(get("/api/v1/customer/get/all")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/customer/get/byId/0")).andExpect(status().isBadRequest());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(scrape.contains("uri=\"/api/v1/customer/get/all\""));
+        assertTrue(scrape.contains("spring_data_repository_invocations_seconds_bucket{"));
+        assertTrue(scrape.contains("customer_rows_loaded_rows_sum{uri=\"/api/v1/customer/get/all\",} 3.0"));
+        assertTrue(scrape.contains("customer_exceptions_handled_total{exception=\"CustomerNotFoundException\",} 1.0"));
+        assertTrue(scrape.contains("customer_datasource_pool_saturation "));
+    }
+}
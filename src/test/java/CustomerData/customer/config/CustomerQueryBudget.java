@@ -0,0 +1,28 @@
+package CustomerData.customer.config;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * limits the database work of a test method, checked by the CustomerQueryBudgetExtension.
+ * Everything the test method does on its own thread is counted, @BeforeEach methods are not
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(CustomerQueryBudgetExtension.class)
+public @interface CustomerQueryBudget {
+
+    /**
+     * @return the maximum number of executed statements
+     */
+    long statements();
+
+    /**
+     * @return the maximum number of rows returned by the repository
+     */
+    long rows();
+}
@@ -0,0 +1,33 @@
+package CustomerData.customer.config;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * records the CustomerRequestStatistics of test methods annotated with CustomerQueryBudget and fails them
+ * if they exceed the budget. MockMvc requests run on the test thread and add to the same statistics
+ */
+public class CustomerQueryBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        CustomerRequestStatistics.stop();
+        CustomerRequestStatistics.start();
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        CustomerRequestStatistics statistics = CustomerRequestStatistics.stop();
+        CustomerQueryBudget budget = context.getRequiredTestMethod().getAnnotation(CustomerQueryBudget.class);
+        if (budget == null || context.getExecutionException().isPresent())
+            return;
+
+        String message = context.getDisplayName() + " exceeded its budget of " + budget.statements()
+                + " statements and " + budget.rows() + " rows: " + statistics;
+        assertTrue(statistics.getStatements() <= budget.statements(), message);
+        assertTrue(statistics.getRowsLoaded() <= budget.rows(), message);
+    }
+}
@@ -0,0 +1,204 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.repository.CustomerRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.http.Cookie;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * routes the reads between two embedded replica databases and the primary. Each replica holds one customer
+ * named after it, so the responses show which database served them
+ */
+@SpringBootTest(properties = {
+        "customer.cache.enabled=false",
+        "customer.datasource.replicas=" + CustomerReplicaRoutingTests.REPLICA_1 + ";IFEXISTS=TRUE,"
+                + CustomerReplicaRoutingTests.REPLICA_2 + ";IFEXISTS=TRUE",
+        "customer.datasource.replica-connection-timeout=250",
+        "customer.datasource.health-interval=3600000"})
+@AutoConfigureMockMvc
+class CustomerReplicaRoutingTests {
+
+    static final String REPLICA_1 = "jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_2 = "jdbc:h2:mem:replica2;DB_CLOSE_DELAY=-1";
+    private static final String BASE = "/api/v1/customer/";
+    //the credentials of the embedded primary, the replica pools copy them
+    private static final String USERNAME = "sa";
+    private static final String PASSWORD = "";
+
+    static {
+        //the replicas have to exist before the pools start, the pools may only connect to existing databases.
+        //H2 delays every failed login while holding a lock shared by all databases, so the pools must be able to log in
+        try {
+            DriverManager.getConnection(REPLICA_1, USERNAME, PASSWORD).close();
+            DriverManager.getConnection(REPLICA_2, USERNAME, PASSWORD).close();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CustomerRoutingDataSource routingDataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("customerReadYourWritesFilter")
+    private OncePerRequestFilter readYourWritesFilter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        customerRepository.save(new Customer(null, "Primary", "Customer", new Date(0),
+                "primary@example.com", "averyverystrongpassword", false));
+        replicate(REPLICA_1, "Replica1");
+        replicate(REPLICA_2, "Replica2");
+        routingDataSource.checkHealth();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void readsSpreadOverReplicas() throws Exception {
+        assertEquals(Set.of("Replica1", "Replica2"), readFirstNames(user("reader"), 10));
+    }
+
+    @Test
+    void writerReadsFromPrimary() throws Exception {
+        mockMvc.perform(post(BASE + "post/add").with(user("writer")).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Written\",\"lastName\":\"Customer\","
+                                + "\"email\":\"written@example.com\",\"password\":\"averyverystrongpassword\"}"))
+                .andExpect(status().isOk());
+
+        assertEquals(Set.of("Primary", "Written"), readFirstNames(user("writer"), 4));
+        assertEquals(Set.of("Replica1", "Replica2"), readFirstNames(user("reader"), 4));
+    }
+
+    @Test
+    void anonymousWriterIsRecognizedByItsCookie() throws Exception {
+        MockHttpServletRequest write = new MockHttpServletRequest("POST", BASE + "post/add");
+        write.setRemoteAddr("10.0.0.1");
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        readYourWritesFilter.doFilter(write, written, (request, response) -> { });
+        Cookie cookie = written.getCookie("CUSTOMER_CLIENT");
+        assertNotNull(cookie);
+
+        MockHttpServletRequest withCookie = new MockHttpServletRequest("GET", BASE + "get/all");
+        withCookie.setRemoteAddr("10.0.0.1");
+        withCookie.setCookies(cookie);
+        assertTrue(readsFromPrimary(withCookie));
+
+        //another client behind the same address
+        MockHttpServletRequest sameAddress = new MockHttpServletRequest("GET", BASE + "get/all");
+        sameAddress.setRemoteAddr("10.0.0.1");
+        assertFalse(readsFromPrimary(sameAddress));
+    }
+
+    @Test
+    void unavailableReplicaIsSkipped() throws Exception {
+        try (Connection connection = DriverManager.getConnection(REPLICA_2, USERNAME, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        routingDataSource.checkHealth();
+
+        assertEquals(Map.of("customer-replica-1", "UP", "customer-replica-2", "DOWN"), routingDataSource.getReplicaHealth());
+        assertEquals(Set.of("Replica1"), readFirstNames(user("reader"), 6));
+
+        replicate(REPLICA_2, "Replica2");
+        Thread.sleep(600);  //Hikari validates pooled connections which were idle for more than 500 ms
+        routingDataSource.checkHealth();
+        assertEquals(Set.of("Replica1", "Replica2"), readFirstNames(user("reader"), 6));
+    }
+
+    /**
+     * helper method to copy the schema of the primary to a replica and add the replica's own customer
+     */
+    private void replicate(String url, String firstName) throws SQLException {
+        List<String> schema = jdbcTemplate.queryForList("SCRIPT NODATA", String.class);
+        try (Connection connection = DriverManager.getConnection(url, USERNAME, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            for (String sql : schema)
+                statement.execute(sql);
+            statement.execute("INSERT INTO customer (id, first_name, last_name, date_of_birth, email, password, "
+                    + "is_pro_member) VALUES (1, '" + firstName + "', 'Customer', TIMESTAMP '1990-01-01 00:00:00', '"
+                    + firstName.toLowerCase() + "@example.com', 'averyverystrongpassword', FALSE)");
+        }
+    }
+
+    /**
+     * helper method to check whether the read-your-writes filter sends a request to the primary
+     */
+    private boolean readsFromPrimary(MockHttpServletRequest request) throws Exception {
+        boolean[] primary = new boolean[1];
+        readYourWritesFilter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            primary[0] = !CustomerRoutingDataSource.enterPrimary();
+            if (!primary[0])
+                CustomerRoutingDataSource.exitPrimary();
+        });
+        return primary[0];
+    }
+
+    /**
+     * helper method to read all customers a number of times and collect the first names
+     */
+    private Set<String> readFirstNames(RequestPostProcessor user, int reads) throws Exception {
+        Set<String> firstNames = new HashSet<>();
+        for (int i = 0; i < reads; i++) {
+            String body = mockMvc.perform(get(BASE + "get/all").with(user))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            for (JsonNode customer : objectMapper.readTree(body))
+                firstNames.add(customer.get("firstName").asText());
+        }
+        return firstNames;
+    }
+}
@@ -0,0 +1,56 @@
+package CustomerData.customer.config;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CustomerSequenceMigrationTests {
+
+    @Autowired
+    private CustomerSequenceMigration customerSequenceMigration;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void sequenceIsMovedBehindTheExistingIds() {
+        //a customer inserted with IDENTITY far ahead of the sequence
+        jdbcTemplate.update("INSERT INTO customer (id, first_name, last_name, email, password, is_pro_member) "
+                + "VALUES (100000, 'Identity', 'Customer', 'identity@example.com', 'averyverystrongpassword', FALSE)");
+
+        customerSequenceMigration.migrate();
+        long next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR customer_sequence", Long.class);
+        assertTrue(next - CustomerSequenceMigration.ALLOCATION_SIZE + 1 > 100000, "next value " + next);
+
+        customerSequenceMigration.migrate();
+        assertEquals(next + CustomerSequenceMigration.ALLOCATION_SIZE,
+                jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR customer_sequence", Long.class));
+
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 2 * CustomerSequenceMigration.ALLOCATION_SIZE; i++)
+            customers.add(new Customer(null, "Sequence", "Customer", new Date(0), "sequence" + i + "@example.com",
+                    "averyverystrongpassword", false));
+        customerRepository.saveAll(customers);
+        assertEquals(customers.size() + 1, customerRepository.count());
+    }
+}
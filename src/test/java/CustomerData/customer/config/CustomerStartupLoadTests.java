@@ -0,0 +1,82 @@
+package CustomerData.customer.config;
+
+import CustomerData.CustomerDataApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * starts the application against a database with 100000 customers, once as before and once with
+ * customer.startup.fast=true, and compares the time until it is ready. Run with ./gradlew loadTest
+ */
+@Tag("load")
+class CustomerStartupLoadTests {
+
+    private static final int ROWS = Integer.getInteger("customer.startup.rows", 100_000);
+    private static final String URL = "jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1";
+
+    @Test
+    void fastStartupSkipsTheTableRewrite() {
+        try (ConfigurableApplicationContext context = start("customer.startup.fast=true", "spring.jpa.hibernate.ddl-auto=create")) {
+            seed(context.getBean(JdbcTemplate.class));
+        }
+
+        long full = millisToReady();
+        long fast = millisToReady("customer.startup.fast=true");
+        long warm = millisToReady("customer.startup.fast=true", "customer.startup.warmup=2s");
+
+        System.out.printf("time to ready with %d customers: %d ms full, %d ms fast, %d ms fast with 2s warmup%n",
+                ROWS, full, fast, warm);
+        assertTrue(fast < full);
+        assertTrue(warm >= 2000);
+    }
+
+    /**
+     * helper method to start the application against the seeded database and measure the time until it is ready
+     * @param properties the properties of the startup mode
+     * @return long value representing the milliseconds until the application was ready
+     */
+    private static long millisToReady(String... properties) {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = start(properties)) {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            assertEquals(ROWS, context.getBean(JdbcTemplate.class).queryForObject("SELECT COUNT(*) FROM customer", Long.class));
+            return millis;
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "server.port=0",
+                "spring.datasource.url=" + URL,
+                "spring.jpa.hibernate.ddl-auto=none",
+                "customer.search.enabled=false"));
+        all.addAll(List.of(properties));
+        return new SpringApplicationBuilder(CustomerDataApplication.class).properties(all.toArray(String[]::new)).run();
+    }
+
+    /**
+     * helper method to insert the customers with plain JDBC batches
+     */
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            batch.add(new Object[]{(long) i, "First" + i, "Last" + i, new Timestamp(i * 1_000_000L),
+                    "customer" + i + "@example.com", "averyverystrongpassword", i % 4 == 0});
+            if (batch.size() == 1000 || i == ROWS) {
+                jdbcTemplate.batchUpdate("INSERT INTO customer (id, first_name, last_name, date_of_birth, email, "
+                        + "password, is_pro_member, version) VALUES (?, ?, ?, ?, ?, ?, ?, 0)", batch);
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package CustomerData.customer.config;
+
+import CustomerData.CustomerDataApplication;
+import CustomerData.customer.Customer;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * compares platform and virtual request threads against a database where every statement takes 50ms.
+ * While 200 requests wait for the database, cached byId reads are measured: with platform threads they queue
+ * behind the blocked request threads, with virtual threads they are answered right away.
+ * Run with ./gradlew loadTest on JDK 21 or newer
+ */
+@Tag("load")
+@EnabledIf("CustomerData.customer.config.VirtualThreadConfig#isSupported")
+class VirtualThreadLoadTests {
+
+    private static final String AUTHORIZATION = "Basic " + Base64.getEncoder()
+            .encodeToString("load:load".getBytes(StandardCharsets.UTF_8));
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void cachedReadsStayFastWhileTheDatabaseIsSaturated() throws Exception {
+        long platform = medianCachedReadMillis(false);
+        long virtual = medianCachedReadMillis(true);
+
+        System.out.printf("median cached read under database saturation: platform %d ms, virtual %d ms%n", platform, virtual);
+        assertTrue(virtual < platform);
+    }
+
+    /**
+     * helper method to start the application in one thread mode and measure cached reads under load
+     * @param virtualThreads boolean value, true to run the requests on virtual threads
+     * @return long value representing the median latency of the cached reads in milliseconds
+     */
+    private long medianCachedReadMillis(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CustomerDataApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=20",
+                        "customer.virtual-threads.enabled=" + virtualThreads,
+                        "customer.admission.enabled=false",
+                        "spring.datasource.hikari.maximum-pool-size=10",
+                        "spring.datasource.driver-class-name=" + SlowDriver.class.getName(),
+                        "spring.datasource.url=jdbc:slow:h2:mem:load" + virtualThreads,
+                        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.security.user.name=load",
+                        "spring.security.user.password=load")
+                .run()) {
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/api/v1/customer/";
+            Long id = context.getBean(CustomerRepository.class).save(new Customer(null, "Load", "Test",
+                    new Date(0), "load@example.com", "averyverystrongpassword", false)).getId();
+            assertEquals(200, get(base + "get/byId/" + id).statusCode());     //fills the cache
+
+            List<CompletableFuture<HttpResponse<String>>> slow = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+                slow.add(client.sendAsync(request(base + "get/NumberOfCustomers"), HttpResponse.BodyHandlers.ofString()));
+            Thread.sleep(200);
+
+            long[] latencies = new long[20];
+            for (int i = 0; i < latencies.length; i++) {
+                long start = System.nanoTime();
+                assertEquals(200, get(base + "get/byId/" + id).statusCode());
+                latencies[i] = (System.nanoTime() - start) / 1_000_000;
+            }
+            CompletableFuture.allOf(slow.toArray(CompletableFuture[]::new)).join();
+
+            Arrays.sort(latencies);
+            return latencies[latencies.length / 2];
+        }
+    }
+
+    private HttpResponse<String> get(String uri) throws Exception {
+        return client.send(request(uri), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest request(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).header("Authorization", AUTHORIZATION).build();
+    }
+}
@@ -0,0 +1,170 @@
+package CustomerData.customer.controller;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.config.CustomerRequestStatistics;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * checks that a repeated poll of the read endpoints is answered with 304 Not Modified without querying
+ * the customer table and that large responses are gzip-compressed
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"customer.cache.enabled=false", "spring.security.user.name=poller", "spring.security.user.password=poller"})
+@AutoConfigureMockMvc
+@WithMockUser
+class CustomerControllerConditionalGetTests {
+
+    private static final String BASE = "/api/v1/customer/";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    @BeforeEach
+    void setUp() {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            customers.add(new Customer(null, "First" + i, "Last" + i, dateOfBirth(20 + i % 10),
+                    "poll" + i + "@example.com", "averyverystrongpassword", i % 10 == 0));
+        customerRepository.saveAll(customers);
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"get/all", "get/findProMembers", "get/NumberOfCustomers", "get/NumberOfProCustomers"})
+    void repeatedPollCostsNoQueries(String endpoint) throws Exception {
+        String eTag = mockMvc.perform(get(BASE + endpoint))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        CustomerRequestStatistics.stop();
+        CustomerRequestStatistics.start();
+        mockMvc.perform(get(BASE + endpoint).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+        CustomerRequestStatistics statistics = CustomerRequestStatistics.stop();
+
+        assertEquals(0, statistics.getStatements(), statistics.toString());
+    }
+
+    @Test
+    void writeChangesETag() throws Exception {
+        String eTag = mockMvc.perform(get(BASE + "get/NumberOfCustomers"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(post(BASE + "post/add").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"New\",\"lastName\":\"Customer\","
+                                + "\"email\":\"poll-new@example.com\",\"password\":\"averyverystrongpassword\"}"))
+                .andExpect(status().isOk());
+
+        String current = mockMvc.perform(get(BASE + "get/NumberOfCustomers").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, current);
+    }
+
+    @Test
+    void batchWriteMovesTheVersionOnce() throws Exception {
+        List<Long> ids = customerRepository.findAll().stream().map(Customer::getId).limit(10).toList();
+        long version = version();
+
+        mockMvc.perform(delete(BASE + "delete/ByIds").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ids.toString()))
+                .andExpect(status().isOk());
+
+        assertEquals(version + 1, version());
+    }
+
+    @Test
+    void writeOfAnotherInstanceChangesETag() throws Exception {
+        String eTag = mockMvc.perform(get(BASE + "get/NumberOfCustomers"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //another instance moves the shared version after its write
+        jdbcTemplate.update("UPDATE customer_table_version SET version = version + 1 WHERE id = 1");
+
+        String current = mockMvc.perform(get(BASE + "get/NumberOfCustomers").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, current);
+    }
+
+    @Test
+    void largeResponsesAreCompressed() throws Exception {
+        String credentials = Base64.getEncoder().encodeToString("poller:poller".getBytes(StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + BASE + "get/all"))
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + credentials)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .build();
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(HttpStatus.OK.value(), response.statusCode());
+        assertEquals("gzip", response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null));
+        assertTrue(response.headers().firstValue(HttpHeaders.ETAG).orElseThrow().startsWith("W/"));
+    }
+
+    /**
+     * helper method to read the shared table version
+     */
+    private long version() {
+        return jdbcTemplate.queryForObject("SELECT version FROM customer_table_version WHERE id = 1", Long.class);
+    }
+
+    /**
+     * helper method to get the date of birth of a customer who turned the given age today
+     */
+    private static Date dateOfBirth(int age) {
+        return Date.from(LocalDate.now().minusYears(age).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
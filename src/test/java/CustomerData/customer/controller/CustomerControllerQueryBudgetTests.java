@@ -0,0 +1,215 @@
+package CustomerData.customer.controller;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.config.CustomerQueryBudget;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * checks the database work of the CustomerController endpoints against 50 customers,
+ * 5 of them share each name, each age and 5 are pro-members
+ */
+@SpringBootTest(properties = "customer.cache.enabled=false")
+@AutoConfigureMockMvc
+@WithMockUser
+class CustomerControllerQueryBudgetTests {
+
+    private static final String BASE = "/api/v1/customer/";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            customers.add(new Customer(null, "First" + i % 10, "Last" + i % 10, dateOfBirth(20 + i % 10),
+                    "budget" + i + "@example.com", "averyverystrongpassword", i % 10 == 0));
+        id = customerRepository.saveAll(customers).get(0).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 1)
+    void findByEmail() throws Exception {
+        mockMvc.perform(get(BASE + "get/byEmailbudget1@example.com")).andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 1)
+    void findById() throws Exception {
+        mockMvc.perform(get(BASE + "get/byId/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.password").doesNotExist());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 3)
+    void findByIds() throws Exception {
+        mockMvc.perform(get(BASE + "get/byIds").param("ids", id + "," + (id + 1) + "," + (id + 2) + ",-1," + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers.length()").value(3))
+                .andExpect(jsonPath("$.notFound[0]").value(-1));
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 5)
+    void findByName() throws Exception {
+        mockMvc.perform(get(BASE + "get/byName").param("firstName", "First1").param("lastName", "Last1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].password").doesNotExist());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 5)
+    void findByAge() throws Exception {
+        mockMvc.perform(get(BASE + "get/byAge/21")).andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 15)
+    void findByAgeRange() throws Exception {
+        mockMvc.perform(get(BASE + "get/byAgeRange").param("minAge", "21").param("maxAge", "23"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 5)
+    void findProMembers() throws Exception {
+        mockMvc.perform(get(BASE + "get/findProMembers")).andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 5)
+    void findByCriteria() throws Exception {
+        mockMvc.perform(get(BASE + "get/byCriteria").param("firstName", "First0").param("lastName", "Last0")
+                        .param("minAge", "20").param("maxAge", "24").param("proMember", "true")
+                        .param("sort", "email,desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[0].email").value("budget40@example.com"))
+                .andExpect(jsonPath("$[0].password").doesNotExist());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 11)
+    void findAllPage() throws Exception {
+        mockMvc.perform(get(BASE + "get/all/page").param("size", "10")).andExpect(status().isOk());
+    }
+
+    @Test
+    //the customers without a date of birth are read first, then the oldest
+    @CustomerQueryBudget(statements = 2, rows = 11)
+    void sortedByAgePage() throws Exception {
+        mockMvc.perform(get(BASE + "get/sortedByAgeOldestFirst/page").param("size", "10")).andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 0)
+    void numberOfProCustomers() throws Exception {
+        mockMvc.perform(get(BASE + "get/NumberOfProCustomers")).andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 2, rows = 0)
+    void addNew() throws Exception {
+        mockMvc.perform(post(BASE + "post/add").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"New\",\"lastName\":\"Customer\","
+                                + "\"email\":\"new@example.com\",\"password\":\"averyverystrongpassword\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 2, rows = 1)
+    void updateById() throws Exception {
+        mockMvc.perform(put(BASE + "updateById/" + id).with(csrf())
+                        .param("firstName", "Renamed").param("proMember", "false"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 1, rows = 0)
+    void patchById() throws Exception {
+        mockMvc.perform(patch(BASE + "patch/" + id).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Patched\",\"version\":0}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 2, rows = 0)
+    void patchByIdWithOutdatedVersion() throws Exception {
+        mockMvc.perform(patch(BASE + "patch/" + id).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Patched\",\"version\":7}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 0, rows = 0)
+    void patchByIdWithoutVersion() throws Exception {
+        mockMvc.perform(patch(BASE + "patch/" + id).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Patched\"}"))
+                .andExpect(status().isPreconditionRequired());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 2, rows = 1)
+    void deleteById() throws Exception {
+        mockMvc.perform(delete(BASE + "delete/ById/" + id).with(csrf())).andExpect(status().isOk());
+    }
+
+    @Test
+    @CustomerQueryBudget(statements = 2, rows = 3)
+    void deleteByEmails() throws Exception {
+        mockMvc.perform(delete(BASE + "delete/ByEmails").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"budget1@example.com\",\"budget2@example.com\",\"budget3@example.com\",\"none@example.com\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted.length()").value(3))
+                .andExpect(jsonPath("$.notFound[0]").value("none@example.com"));
+    }
+
+    /**
+     * helper method to compute a date of birth for an age
+     * @param age age in years
+     * @return date of birth of someone who turned {@param age} a month ago
+     */
+    private static Date dateOfBirth(int age) {
+        return Date.from(LocalDate.now().minusYears(age).minusMonths(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
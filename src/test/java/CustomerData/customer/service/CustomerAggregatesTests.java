@@ -0,0 +1,160 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.dto.CustomerStatistics;
+import CustomerData.customer.repository.CustomerRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "customer.cache.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class CustomerAggregatesTests {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerAggregates customerAggregates;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        customerRepository.deleteAllInBatch();
+        customerAggregates.reconcile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void statisticsFollowEveryWriteAndMatchTheDatabase() throws Exception {
+        for (int i = 0; i < 60; i++)
+            customerService.addNew(new Customer(null, "First", "Last", i % 20 == 0 ? null : dateOfBirth(18 + i, i % 12),
+                    "stats" + i + "@example.com", "averyverystrongpassword", i % 3 == 0));
+        Long id = customerRepository.findCustomerByEmail("stats1@example.com").orElseThrow().getId();
+        customerService.update(id, null, null, null, null, null, true);
+        customerService.deleteByEmail("stats2@example.com");
+        assertMatches(customerRepository.findAll(), customerService.getStatistics(10, false));
+
+        CustomerStatistics recomputed = customerService.getStatistics(10, true);
+        assertEquals(CustomerStatistics.Source.DATABASE, recomputed.getSource());
+        assertEquals(Boolean.TRUE, recomputed.getConsistent());
+        assertMatches(customerRepository.findAll(), recomputed);
+    }
+
+    @Test
+    void activeAggregatesAnswerWithoutQueries() {
+        Date dateOfBirth = dateOfBirth(30, 4);
+        customerService.addNew(new Customer(null, "First", "Last", dateOfBirth, "ada@example.com",
+                "averyverystrongpassword", true));
+        assertTrue(customerAggregates.isActive());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        CustomerStatistics customerStatistics = customerService.getStatistics(null, false);
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(CustomerStatistics.Source.MEMORY, customerStatistics.getSource());
+        assertEquals(Customer.ageOf(dateOfBirth), customerStatistics.getMinAge());
+        assertEquals(1, customerStatistics.getBirthMonths().get(Month.MAY));
+    }
+
+    @Test
+    void recomputeRepairsDrift() {
+        customerRepository.save(new Customer(null, "Hidden", "Customer", dateOfBirth(40, 0), "hidden@example.com",
+                "averyverystrongpassword", true));
+        assertEquals(0, customerService.getStatistics(10, false).getCustomers());
+
+        CustomerStatistics recomputed = customerService.getStatistics(10, true);
+        assertEquals(Boolean.FALSE, recomputed.getConsistent());
+        assertEquals(1, recomputed.getProMembers());
+        assertEquals(1, customerService.getStatistics(10, false).getProMembers());
+    }
+
+    @Test
+    void patchedMembershipIsCountedInTheDatabase() throws Exception {
+        customerService.addNew(new Customer(null, "First", "Last", dateOfBirth(30, 0), "ada@example.com",
+                "averyverystrongpassword", false));
+        Customer customer = customerService.findByEmail("ada@example.com");
+        customerService.patch(customer.getId(), new CustomerPatch(null, null, null, null, null, true, customer.getVersion()));
+
+        assertFalse(customerAggregates.isActive());
+        CustomerStatistics statistics = customerService.getStatistics(10, false);
+        assertEquals(CustomerStatistics.Source.DATABASE, statistics.getSource());
+        assertNull(statistics.getConsistent());
+        assertEquals(1, statistics.getProMembers());
+        assertTrue(customerAggregates.isActive());
+    }
+
+    /**
+     * helper method to compare the statistics with the ones computed from the loaded customers
+     */
+    private static void assertMatches(List<Customer> customers, CustomerStatistics statistics) {
+        List<Integer> ages = new ArrayList<>();
+        long proMembers = 0;
+        long[] months = new long[12];
+        for (Customer customer : customers) {
+            if (customer.isProMember())
+                proMembers++;
+            if (customer.getDateOfBirth() == null)
+                continue;
+            ages.add(customer.getAge());
+            months[customer.getDateOfBirth().toInstant().atZone(ZoneId.systemDefault()).getMonthValue() - 1]++;
+        }
+
+        assertEquals(customers.size(), statistics.getCustomers());
+        assertEquals(proMembers, statistics.getProMembers());
+        assertEquals(customers.size() - ages.size(), statistics.getWithoutDateOfBirth());
+        assertEquals(ages.stream().mapToInt(Integer::intValue).min().orElseThrow(), statistics.getMinAge());
+        assertEquals(ages.stream().mapToInt(Integer::intValue).max().orElseThrow(), statistics.getMaxAge());
+        assertEquals(ages.stream().mapToInt(Integer::intValue).average().orElseThrow(), statistics.getMeanAge(), 1e-9);
+        for (Month month : Month.values())
+            assertEquals(months[month.ordinal()], statistics.getBirthMonths().get(month));
+        for (CustomerStatistics.AgeBucket bucket : statistics.getAgeBuckets()) {
+            assertEquals(customers.stream().filter(customer -> customer.getDateOfBirth() != null
+                    && customer.getAge() >= bucket.getFromAge() && customer.getAge() <= bucket.getToAge()).count(),
+                    bucket.getCustomers());
+            assertEquals(customers.stream().filter(customer -> customer.getDateOfBirth() != null && customer.isProMember()
+                    && customer.getAge() >= bucket.getFromAge() && customer.getAge() <= bucket.getToAge()).count(),
+                    bucket.getProMembers());
+        }
+        assertEquals(ages.size(), statistics.getAgeBuckets().stream().mapToLong(CustomerStatistics.AgeBucket::getCustomers).sum());
+    }
+
+    /**
+     * helper method to compute a date of birth on the 15th of a month, age years ago
+     * @param age years before the current year
+     * @param month 0-based month of the year
+     */
+    private static Date dateOfBirth(int age, int month) {
+        LocalDate birthday = LocalDate.now().minusYears(age).withMonth(month + 1).withDayOfMonth(15);
+        return Date.from(birthday.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,94 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.exception.CustomerNotFoundException;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CustomerCacheTests {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerCache customerCache;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        customerCache.invalidateAll();
+        id = customerRepository.save(new Customer(null, "v0", "Cached", new Date(0),
+                "v0@example.com", "averyverystrongpassword", false)).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+        customerCache.invalidateAll();
+    }
+
+    @Test
+    void noStaleReadAfterCommittedWrite() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            futures.add(readers.submit(() -> {
+                while (running.get())
+                    customerService.findById(id);
+            }));
+
+        try {
+            for (int version = 1; version <= 200; version++) {
+                String email = "v" + version + "@example.com";
+                customerService.update(id, "v" + version, null, null, email, null, false);
+
+                assertEquals("v" + version, customerService.findById(id).getFirstName());
+                assertEquals(id, customerService.findByEmail(email).getId());
+                String previousEmail = "v" + (version - 1) + "@example.com";
+                assertThrows(CustomerNotFoundException.class, () -> customerService.findByEmail(previousEmail));
+            }
+        } finally {
+            running.set(false);
+            readers.shutdown();
+            assertTrue(readers.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        for (Future<?> future : futures)
+            future.get();
+
+        assertTrue(customerCache.getStatistics().get("byId").get("hitCount").longValue() > 0);
+    }
+
+    @Test
+    void deleteInvalidatesBothLookups() {
+        customerService.findById(id);
+        customerService.findByEmail("v0@example.com");
+
+        customerService.deleteById(id);
+
+        assertThrows(CustomerNotFoundException.class, () -> customerService.findById(id));
+        assertThrows(CustomerNotFoundException.class, () -> customerService.findByEmail("v0@example.com"));
+    }
+}
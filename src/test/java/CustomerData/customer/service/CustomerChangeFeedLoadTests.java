@@ -0,0 +1,133 @@
+package CustomerData.customer.service;
+
+import CustomerData.CustomerDataApplication;
+import CustomerData.customer.Customer;
+import CustomerData.customer.event.CustomerChangedEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * opens 2000 subscriptions of the change feed and publishes 20 changes, every subscriber has to receive all of them
+ * in order. The subscriptions share one session, so only the first one is authenticated with the password hash.
+ * Run with ./gradlew loadTest
+ */
+@Tag("load")
+class CustomerChangeFeedLoadTests {
+
+    private static final int SUBSCRIBERS = 2000;
+    private static final int CHANGES = 20;
+    private static final String AUTHORIZATION = "Basic " + Base64.getEncoder()
+            .encodeToString("load:load".getBytes(StandardCharsets.UTF_8));
+
+    private final HttpClient client = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+
+    @Test
+    void thousandsOfSubscribersReceiveEveryChangeInOrder() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CustomerDataApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.accept-count=" + SUBSCRIBERS,    //the connections are opened at once
+                        "spring.datasource.url=jdbc:h2:mem:feed",
+                        "spring.security.user.name=load",
+                        "spring.security.user.password=load")
+                .run()) {
+            CustomerChangeFeed feed = context.getBean(CustomerChangeFeed.class);
+            URI uri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/api/v1/customer/get/changes");
+
+            Subscription first = subscribe(uri);
+            assertTrue(first.subscribed.await(30, TimeUnit.SECONDS));
+            List<Subscription> subscriptions = new ArrayList<>(List.of(first));
+            for (int i = 1; i < SUBSCRIBERS; i++)
+                subscriptions.add(subscribe(uri));
+            for (Subscription subscription : subscriptions)
+                assertTrue(subscription.subscribed.await(60, TimeUnit.SECONDS));
+            assertEquals(SUBSCRIBERS, feed.getSubscribers());
+
+            long start = System.nanoTime();
+            for (int i = 0; i < CHANGES; i++)
+                feed.onCustomerChanged(CustomerChangedEvent.deleted(new Customer((long) i, "Deleted", "Customer",
+                        new Date(0), "deleted" + i + "@example.com", "averyverystrongpassword", false)));
+            for (Subscription subscription : subscriptions)
+                assertTrue(subscription.received.await(60, TimeUnit.SECONDS));
+            System.out.printf("%d changes delivered to %d subscribers in %d ms%n", CHANGES, SUBSCRIBERS,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            for (Subscription subscription : subscriptions) {
+                assertTrue(subscription.inOrder);
+                subscription.cancel();
+            }
+            assertEquals(0, feed.getOverflows());
+        }
+    }
+
+    private Subscription subscribe(URI uri) {
+        Subscription subscription = new Subscription();
+        client.sendAsync(HttpRequest.newBuilder(uri).header("Authorization", AUTHORIZATION).build(),
+                HttpResponse.BodyHandlers.fromLineSubscriber(subscription));
+        return subscription;
+    }
+
+    /**
+     * counts the events of one subscription and checks that their sequence numbers follow each other
+     */
+    private static final class Subscription implements Flow.Subscriber<String> {
+
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+        private final CountDownLatch received = new CountDownLatch(CHANGES);
+        private volatile Flow.Subscription subscription;
+        private volatile boolean inOrder = true;
+        private long lastSequence = -1;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith(":")) {
+                subscribed.countDown();
+            } else if (line.startsWith("id:")) {
+                long sequence = Long.parseLong(line.substring(line.indexOf('-') + 1));
+                if (lastSequence >= 0 && sequence != lastSequence + 1)
+                    inOrder = false;
+                lastSequence = sequence;
+                received.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private void cancel() {
+            if (subscription != null)
+                subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.event.CustomerChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.security.user.name=feed",
+        "spring.security.user.password=feed",
+        "customer.feed.subscriber-queue=100"})
+@AutoConfigureMockMvc
+class CustomerChangeFeedTests {
+
+    private static final String AUTHORIZATION = "Basic " + Base64.getEncoder()
+            .encodeToString("feed:feed".getBytes(StandardCharsets.UTF_8));
+
+    //keeps the session, so the subscriptions aren't each authenticated with the slow password hash
+    private final HttpClient client = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerChangeFeed customerChangeFeed;
+
+    @Test
+    void reconnectingSubscriberResumesFromItsLastEvent() throws Exception {
+        Subscription first = subscribe(null, 4);
+        assertTrue(first.subscribed.await(10, TimeUnit.SECONDS));
+        customerService.addNew(new Customer(null, "Feed", "Customer", new Date(0), "feed@example.com",
+                "averyverystrongpassword", false));
+        Customer customer = customerService.findByEmail("feed@example.com");
+        customerService.update(customer.getId(), null, "Changed", null, null, null, true);
+        customerService.patch(customer.getId(), new CustomerPatch("Patched", null, null, null, null, null, 1L));
+        customerService.deleteById(customer.getId());
+
+        assertTrue(first.received.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("CREATED", "UPDATED", "PATCHED", "DELETED"), first.names());
+        List<String> data = first.data();
+        assertTrue(data.get(2).contains("\"patch\":{\"firstName\":\"Patched\",\"version\":2}"));
+        assertTrue(data.stream().noneMatch(line -> line.contains("averyverystrongpassword")));
+        first.cancel();
+
+        //the missed changes are sent while the subscription is handled, the reconnect is a request of MockMvc,
+        //so the events are in its response once it returns
+        String lastEventId = first.lastId();
+        publishDeleted(101);
+        publishDeleted(102);
+        List<String> resumed = replay(lastEventId);
+        assertEquals(List.of("id:" + epochOf(lastEventId) + (sequenceOf(lastEventId) + 1), "event:DELETED",
+                "id:" + epochOf(lastEventId) + (sequenceOf(lastEventId) + 2), "event:DELETED"), resumed);
+
+        List<String> unknown = replay("0-1");
+        assertEquals("event:" + CustomerChangeFeed.RESET, unknown.get(1));
+    }
+
+    @Test
+    void subscriberWhichFallsBehindIsDisconnected() throws Exception {
+        long overflows = customerChangeFeed.getOverflows();
+        Subscription stalled = subscribe(null, 1);
+        assertTrue(stalled.subscribed.await(10, TimeUnit.SECONDS));
+        stalled.stall();
+
+        //the writes don't wait for the stalled subscriber, its queue overflows instead
+        for (int i = 0; i < 100_000 && customerChangeFeed.getOverflows() == overflows; i++)
+            publishDeleted(i);
+
+        assertTrue(customerChangeFeed.getOverflows() > overflows);
+        stalled.cancel();
+    }
+
+    /**
+     * helper method to reconnect with a Last-Event-ID and end the subscription again
+     * @return List filled with the id and event lines sent right away
+     */
+    private List<String> replay(String lastEventId) throws Exception {
+        int subscribers = customerChangeFeed.getSubscribers();
+        MvcResult result = mockMvc.perform(get("/api/v1/customer/get/changes").with(user("feed"))
+                        .header("Last-Event-ID", lastEventId))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        List<String> lines = result.getResponse().getContentAsString().lines()
+                .filter(line -> line.startsWith("id:") || line.startsWith("event:"))
+                .toList();
+
+        result.getRequest().getAsyncContext().complete();
+        for (int i = 0; i < 100 && customerChangeFeed.getSubscribers() > subscribers; i++)
+            Thread.sleep(50);
+        //the cancelled subscription of the test may be noticed meanwhile
+        assertTrue(customerChangeFeed.getSubscribers() <= subscribers);
+        return lines;
+    }
+
+    /**
+     * helper method to publish a change without touching the database
+     */
+    private void publishDeleted(long id) {
+        customerChangeFeed.onCustomerChanged(CustomerChangedEvent.deleted(new Customer(id, "Deleted", "Customer",
+                new Date(0), "deleted" + id + "@example.com", "averyverystrongpassword", false)));
+    }
+
+    private Subscription subscribe(String lastEventId, int events) {
+        Subscription subscription = new Subscription(events);
+        client.sendAsync(request(lastEventId), HttpResponse.BodyHandlers.fromLineSubscriber(subscription));
+        return subscription;
+    }
+
+    private HttpRequest request(String lastEventId) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/customer/get/changes"))
+                .header("Authorization", AUTHORIZATION);
+        if (lastEventId != null)
+            request.header("Last-Event-ID", lastEventId);
+        return request.build();
+    }
+
+    private static String epochOf(String eventId) {
+        return eventId.substring(0, eventId.indexOf('-') + 1);
+    }
+
+    private static long sequenceOf(String eventId) {
+        return Long.parseLong(eventId.substring(eventId.indexOf('-') + 1));
+    }
+
+    /**
+     * collects the events of one subscription from the lines of the stream
+     */
+    private static final class Subscription implements Flow.Subscriber<String> {
+
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+        private final CountDownLatch received;
+        private final List<String> ids = new ArrayList<>();     //guarded by this
+        private final List<String> names = new ArrayList<>();   //guarded by this
+        private final List<String> data = new ArrayList<>();    //guarded by this
+        private volatile Flow.Subscription subscription;
+        private volatile boolean stalled;
+
+        private Subscription(int events) {
+            this.received = new CountDownLatch(events);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public synchronized void onNext(String line) {
+            if (line.startsWith(":")) {
+                subscribed.countDown();
+            } else if (line.startsWith("id:")) {
+                ids.add(line.substring(3));
+            } else if (line.startsWith("event:")) {
+                names.add(line.substring(6));
+            } else if (line.startsWith("data:")) {
+                //the data is the last line of an event
+                data.add(line.substring(5));
+                received.countDown();
+            }
+            //a stalled subscription stops reading, the client stops reading from the socket
+            if (!stalled)
+                subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private void stall() {
+            stalled = true;
+        }
+
+        private synchronized List<String> names() {
+            return new ArrayList<>(names);
+        }
+
+        private synchronized List<String> data() {
+            return new ArrayList<>(data);
+        }
+
+        private synchronized String lastId() {
+            return ids.get(ids.size() - 1);
+        }
+
+        private void cancel() {
+            if (subscription != null)
+                subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.repository.CustomerRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "customer.counter.enabled=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class CustomerCounterTests {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerCounter customerCounter;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        customerRepository.deleteAllInBatch();
+        customerCounter.reconcile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void countsFollowEveryWrite() throws Exception {
+        customerService.addNew(customer("ada@example.com", true));
+        customerService.addNew(customer("bob@example.com", false));
+        customerService.addNew(customer("eve@example.com", false));
+        assertCounts(3, 1, 2);
+
+        Long bob = customerRepository.findCustomerByEmail("bob@example.com").orElseThrow().getId();
+        customerService.update(bob, null, null, null, null, null, true);
+        assertCounts(3, 2, 1);
+
+        customerService.deleteById(bob);
+        assertCounts(2, 1, 1);
+
+        customerService.deleteByEmail("eve@example.com");
+        assertCounts(1, 1, 0);
+    }
+
+    @Test
+    void activeCounterAnswersWithoutQueries() {
+        customerService.addNew(customer("ada@example.com", true));
+        assertTrue(customerCounter.isActive());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        customerService.getNumberOfCustomers();
+        customerService.getNumberOfProMembers();
+        customerService.getNumberOfNonProMembers();
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void reconcileRepairsDrift() {
+        customerRepository.save(customer("hidden@example.com", true));
+        assertEquals(0, customerService.getNumberOfProMembers());
+
+        customerCounter.reconcile();
+        assertEquals(1, customerService.getNumberOfProMembers());
+    }
+
+    /**
+     * helper method to compare the in-process counts with the expected values and the database
+     */
+    private void assertCounts(long total, long pro, long nonPro) {
+        assertEquals(total, customerService.getNumberOfCustomers());
+        assertEquals(pro, customerService.getNumberOfProMembers());
+        assertEquals(nonPro, customerService.getNumberOfNonProMembers());
+        assertEquals(total, customerRepository.count());
+        assertEquals(pro, customerRepository.countCustomersByProMember(true));
+    }
+
+    private static Customer customer(String email, boolean proMember) {
+        return new Customer(null, "First", "Last", new Date(0), email, "averyverystrongpassword", proMember);
+    }
+}
@@ -0,0 +1,108 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerDeleteResult;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.exception.CustomerNotFoundException;
+import CustomerData.customer.repository.CustomerRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "customer.cache.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "customer.email-filter.enabled=true"
+})
+class CustomerEmailFilterTests {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerEmailFilter customerEmailFilter;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        customerRepository.deleteAllInBatch();
+        customerEmailFilter.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void missingEmailsAreAnsweredWithoutQueries() {
+        for (int i = 0; i < 100; i++)
+            customerRepository.save(customer("present" + i + "@example.com"));
+        int missing = 0;
+        for (int i = 0; i < 1000; i++)
+            if (!customerEmailFilter.mightExist("missing" + i + "@example.com"))
+                missing++;
+        assertTrue(missing > 950, missing + " of 1000 missing emails were recognized");
+
+        String email = customerEmailFilter.mightExist("absent@example.com") ? "absent2@example.com" : "absent@example.com";
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long avoided = customerEmailFilter.getAvoided();
+        assertThrows(CustomerNotFoundException.class, () -> customerService.findByEmail(email));
+        assertThrows(CustomerNotFoundException.class, () -> customerService.deleteByEmail(email));
+        CustomerDeleteResult<String> result = customerService.deleteByEmails(List.of(email));
+        assertEquals(List.of(email), result.getNotFound());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(avoided + 3, customerEmailFilter.getAvoided());
+
+        for (int i = 0; i < 100; i++)
+            assertEquals("present" + i + "@example.com", customerService.findByEmail("present" + i + "@example.com").getEmail());
+    }
+
+    @Test
+    void writesAreSeenBeforeTheNextRebuild() throws Exception {
+        Customer saved = customerRepository.save(customer("saved@example.com"));
+        customerService.addNew(customer("added@example.com"));
+        customerService.update(saved.getId(), null, null, null, "updated@example.com", null, false);
+        Long id = customerRepository.findCustomerByEmail("added@example.com").orElseThrow().getId();
+        CustomerPatch patch = new CustomerPatch();
+        patch.setEmail("patched@example.com");
+        patch.setVersion(customerRepository.findById(id).orElseThrow().getVersion());
+        customerService.patch(id, patch);
+
+        assertEquals(saved.getId(), customerService.findByEmail("updated@example.com").getId());
+        assertEquals(id, customerService.findByEmail("patched@example.com").getId());
+
+        //JDBC writes and the writes of other instances bypass the filter and are only seen after a rebuild
+        jdbcTemplate.update("INSERT INTO customer (id, first_name, last_name, email, password, is_pro_member) " +
+                "VALUES (900001, 'Jdbc', 'Customer', 'jdbc@example.com', 'averyverystrongpassword', false)");
+        customerEmailFilter.rebuild();
+        assertTrue(customerEmailFilter.mightExist("jdbc@example.com"));
+        assertEquals(900001L, customerService.findByEmail("jdbc@example.com").getId());
+    }
+
+    private static Customer customer(String email) {
+        return new Customer(null, "Filtered", "Customer", new Date(0), email, "averyverystrongpassword", false);
+    }
+}
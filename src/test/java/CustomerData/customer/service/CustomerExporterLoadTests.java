@@ -0,0 +1,16 @@
+package CustomerData.customer.service;
+
+import org.junit.jupiter.api.Tag;
+
+/**
+ * exports customer.export.rows (default 1M) customers, materializing the export would fail with an OutOfMemoryError.
+ * Run with ./gradlew loadTest
+ */
+@Tag("load")
+class CustomerExporterLoadTests extends CustomerExporterTests {
+
+    @Override
+    int rows() {
+        return Integer.getInteger("customer.export.rows", 1_000_000);
+    }
+}
@@ -0,0 +1,98 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * exports customer.export.rows (default 10000) customers from a file based H2 database.
+ * The volume run with 1M customers is CustomerExporterLoadTests
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:./build/customer-export-test",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class CustomerExporterTests {
+
+    @Autowired
+    private CustomerExporter customerExporter;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return the number of exported customers
+     */
+    int rows() {
+        return Integer.getInteger("customer.export.rows", 10_000);
+    }
+
+    @BeforeAll
+    void setUp() {
+        customerRepository.deleteAllInBatch();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= rows(); i++) {
+            rows.add(new Object[]{(long) i, "First" + i, "Last, \"" + i + "\"", new Timestamp(0),
+                    "customer" + i + "@example.com", "averyverystrongpassword", i % 2 == 0});
+            if (rows.size() == 10_000 || i == rows()) {
+                jdbcTemplate.batchUpdate("INSERT INTO customer (id, first_name, last_name, date_of_birth, email, " +
+                        "password, is_pro_member) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+    }
+
+    @AfterAll
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void exportsEveryRowAsNdjson() throws Exception {
+        LineCounter out = new LineCounter();
+        assertEquals(rows(), customerExporter.export(CustomerExporter.Format.NDJSON, out));
+        assertEquals(rows(), out.lines);
+    }
+
+    @Test
+    void exportsEveryRowAsCsv() throws Exception {
+        LineCounter out = new LineCounter();
+        assertEquals(rows(), customerExporter.export(CustomerExporter.Format.CSV, out));
+        assertEquals(rows() + 1, out.lines);     //header line
+    }
+
+    /**
+     * OutputStream which only counts the written lines instead of keeping the bytes
+     */
+    private static class LineCounter extends OutputStream {
+        private long lines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n')
+                lines++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++)
+                write(b[i]);
+        }
+    }
+}
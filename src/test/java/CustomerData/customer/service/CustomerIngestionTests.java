@@ -0,0 +1,196 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerRegistration;
+import CustomerData.customer.exception.CustomerIngestionFullException;
+import CustomerData.customer.repository.CustomerRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * registers customers through the write-behind mode of post/add and polls their registrations
+ */
+@SpringBootTest(properties = {"customer.cache.enabled=false", "customer.ingestion.enabled=true"})
+@AutoConfigureMockMvc
+@WithMockUser
+class CustomerIngestionTests {
+
+    private static final String BASE = "/api/v1/customer/";
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void queuedRegistrationsAreStoredAndTracked() throws Exception {
+        customerRepository.save(new Customer(null, "Taken", "Customer", new Date(0), "taken@example.com",
+                "averyverystrongpassword", false));
+
+        JsonNode created = register("queued@example.com", "signup-1");
+        assertEquals("QUEUED", created.get("status").asText());
+        assertEquals(created.get("trackingId"), register("queued@example.com", "signup-1").get("trackingId"));
+        JsonNode duplicate = register("taken@example.com", null);
+
+        JsonNode stored = awaitStored(created.get("trackingId").asText());
+        assertEquals("CREATED", stored.get("status").asText());
+        assertEquals(customerRepository.findCustomerByEmail("queued@example.com").orElseThrow().getId(),
+                stored.get("id").asLong());
+        assertEquals("DUPLICATE", awaitStored(duplicate.get("trackingId").asText()).get("status").asText());
+        assertEquals(2, customerRepository.count());
+
+        mockMvc.perform(post(BASE + "post/add").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"No\",\"lastName\":\"Email\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(BASE + "get/registration/" + UUID.randomUUID()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void fullQueueRejectsRegistrations() throws Exception {
+        //the worker isn't started, so the queue only fills up
+        CustomerIngestion ingestion = new CustomerIngestion(null, objectMapper, true, 2, 100,
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ZERO, "", "");
+        ingestion.register(customer("first@example.com"), "first");
+        ingestion.register(customer("first@example.com"), "first");
+        ingestion.register(customer("second@example.com"), null);
+
+        assertThrows(CustomerIngestionFullException.class, () -> ingestion.register(customer("third@example.com"), null));
+        assertEquals(2, ingestion.getQueued());
+        assertEquals(1, ingestion.getRejected());
+    }
+
+    @Test
+    void journaledRegistrationsAreQueuedAgainAfterACrash() throws Exception {
+        String journal = directory.resolve("registrations.ndjson").toString();
+        CustomerIngestion crashed = new CustomerIngestion(null, objectMapper, true, 10, 100,
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ZERO, journal, KEY);
+        CustomerRegistration first = crashed.register(customer("first@example.com"), "first");
+        CustomerRegistration second = crashed.register(customer("second@example.com"), null);
+        //a registration which was being written when the process died, it wasn't answered
+        Files.writeString(Path.of(journal), "{\"trackingId\":\"", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        CustomerIngestion restarted = new CustomerIngestion(null, objectMapper, true, 10, 100,
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ZERO, journal, KEY);
+        assertEquals(2, restarted.getQueued());
+        assertEquals(CustomerRegistration.Status.QUEUED, restarted.getRegistration(second.getTrackingId()).getStatus());
+        assertEquals(first.getTrackingId(), restarted.register(customer("first@example.com"), "first").getTrackingId());
+        assertEquals(2, Files.readAllLines(Path.of(journal)).size());
+        restarted.close();
+    }
+
+    @Test
+    void journalHidesThePasswords() throws Exception {
+        Path journal = directory.resolve("registrations.ndjson");
+        CustomerIngestion ingestion = new CustomerIngestion(null, objectMapper, true, 10, 100,
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ZERO, journal.toString(), KEY);
+        ingestion.register(customer("secret@example.com"), null);
+        ingestion.close();
+
+        assertFalse(Files.readString(journal).contains("averyverystrongpassword"));
+        if (journal.getFileSystem().supportedFileAttributeViews().contains("posix"))
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(journal)));
+        assertThrows(IllegalArgumentException.class, () -> new CustomerIngestion(null, objectMapper, true, 10, 100,
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ZERO, journal.toString(), ""));
+    }
+
+    @Test
+    void failedBatchesAreNotQueuedAgain() throws Exception {
+        String journal = directory.resolve("registrations.ndjson").toString();
+        //without an importer every batch fails
+        CustomerIngestion failing = new CustomerIngestion(null, objectMapper, true, 10, 100,
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ofSeconds(10), journal, KEY);
+        CustomerRegistration registration = failing.register(customer("failed@example.com"), null);
+        failing.start();
+        failing.close();
+        assertEquals(CustomerRegistration.Status.FAILED, failing.getRegistration(registration.getTrackingId()).getStatus());
+
+        CustomerIngestion restarted = new CustomerIngestion(null, objectMapper, true, 10, 100,
+                Duration.ofSeconds(1), Duration.ofHours(1), Duration.ZERO, journal, KEY);
+        assertEquals(0, restarted.getQueued());
+        restarted.close();
+    }
+
+    /**
+     * helper method to send a registration to post/add
+     * @return JsonNode of the CustomerRegistration it was answered with
+     */
+    private JsonNode register(String email, String idempotencyKey) throws Exception {
+        var request = post(BASE + "post/add").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"firstName\":\"Queued\",\"lastName\":\"Customer\",\"email\":\"" + email
+                        + "\",\"password\":\"averyverystrongpassword\"}");
+        if (idempotencyKey != null)
+            request.header("Idempotency-Key", idempotencyKey);
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(status().isAccepted())
+                .andReturn();
+        JsonNode registration = objectMapper.readTree(result.getResponse().getContentAsString());
+        assertTrue(result.getResponse().getHeader(HttpHeaders.LOCATION)
+                .endsWith(BASE + "get/registration/" + registration.get("trackingId").asText()));
+        return registration;
+    }
+
+    /**
+     * helper method to poll a registration until the worker stored it
+     */
+    private JsonNode awaitStored(String trackingId) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            JsonNode registration = objectMapper.readTree(mockMvc.perform(get(BASE + "get/registration/" + trackingId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            if (!"QUEUED".equals(registration.get("status").asText()))
+                return registration;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("The registration " + trackingId + " wasn't stored");
+    }
+
+    private static Customer customer(String email) {
+        return new Customer(null, "Queued", "Customer", new Date(0), email, "averyverystrongpassword", false);
+    }
+}
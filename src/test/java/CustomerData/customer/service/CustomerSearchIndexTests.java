@@ -0,0 +1,96 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.dto.CustomerSuggestion;
+import CustomerData.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CustomerSearchIndexTests {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        add("Zqanna", "Smith", "anna.smith@example.com");
+        add("Bob", "Zqannerl", "bob@example.com");
+        add("Carl", "Jones", "zqann@example.com");
+        add("Dora", "Zqbrown", "dora@example.com");
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (String email : List.of("anna.smith@example.com", "bob@example.com", "zqann@example.com", "dora@example.com"))
+            customerService.deleteByEmail(email);
+    }
+
+    @Test
+    void prefixMatchesFirstNameLastNameAndEmail() {
+        assertTrue(customerSearchIndex.isActive());
+        assertEquals(Set.of("anna.smith@example.com", "bob@example.com", "zqann@example.com"), emails("ZQann", 10));
+        assertEquals(Set.of("dora@example.com"), emails("zqb", 10));
+        assertEquals(2, customerService.search("zq", 2).size());
+    }
+
+    @Test
+    void databaseSearchIgnoresTheCase() {
+        List<CustomerSuggestion> suggestions = customerRepository.findSuggestions("ZQann%", PageRequest.of(0, 10));
+        assertEquals(Set.of("anna.smith@example.com", "bob@example.com", "zqann@example.com"),
+                suggestions.stream().map(CustomerSuggestion::getEmail).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void writesUpdateTheIndex() throws Exception {
+        Long id = customerService.findByEmail("dora@example.com").getId();
+        customerService.update(id, null, "Zqgreen", null, "dora.green@example.com", null, false);
+
+        assertTrue(emails("zqb", 10).isEmpty());
+        assertEquals(Set.of("dora.green@example.com"), emails("zqg", 10));
+        assertEquals(Set.of("dora.green@example.com"), emails("dora.g", 10));
+
+        Customer patched = customerService.findByEmail("dora.green@example.com");
+        customerService.patch(id, new CustomerPatch(null, "Zqblack", null, null, null, null, patched.getVersion()));
+        assertTrue(emails("zqg", 10).isEmpty());
+        assertEquals(Set.of("dora.green@example.com"), emails("zqbl", 10));
+
+        customerService.deleteById(id);
+        assertTrue(emails("zqbl", 10).isEmpty());
+        add("Dora", "Zqbrown", "dora@example.com");
+    }
+
+    /**
+     * helper method to add a customer through the CustomerService
+     */
+    private void add(String firstName, String lastName, String email) throws Exception {
+        customerService.addNew(new Customer(null, firstName, lastName, new Date(0), email, "averyverystrongpassword", false));
+    }
+
+    /**
+     * helper method to get the emails of the search results
+     */
+    private Set<String> emails(String prefix, int limit) {
+        List<CustomerSuggestion> suggestions = customerService.search(prefix, limit);
+        return suggestions.stream().map(CustomerSuggestion::getEmail).collect(Collectors.toSet());
+    }
+}
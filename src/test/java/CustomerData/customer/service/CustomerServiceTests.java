@@ -0,0 +1,494 @@
+package CustomerData.customer.service;
+
+import CustomerData.customer.Customer;
+import CustomerData.customer.dto.CustomerCriteria;
+import CustomerData.customer.dto.CustomerDeleteResult;
+import CustomerData.customer.dto.CustomerImportResult;
+import CustomerData.customer.dto.CustomerImportRow;
+import CustomerData.customer.dto.CustomerPage;
+import CustomerData.customer.dto.CustomerPatch;
+import CustomerData.customer.dto.CustomerSummary;
+import CustomerData.customer.exception.CustomerAlreadyExistingException;
+import CustomerData.customer.exception.CustomerSearchException;
+import CustomerData.customer.exception.CustomerVersionConflictException;
+import CustomerData.customer.exception.CustomerVersionRequiredException;
+import CustomerData.customer.repository.CustomerRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "customer.cache.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        //the concurrent patches queue on one row, longer than the default lock timeout of H2. The row lock waits
+        //of the MVStore of H2 1.4.200 can miss the end of the blocking transaction under this contention,
+        //the PageStore waits on table locks instead
+        "spring.datasource.url=jdbc:h2:mem:service-tests;MV_STORE=FALSE;LOCK_TIMEOUT=10000"
+})
+class CustomerServiceTests {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerImporter customerImporter;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void findByAgeLoadsOnlyMatchingRowsRegardlessOfTableSize() {
+        seed(5, 30, "match");
+        seed(50, 40, "small");
+        assertEquals(5, rowsReturnedBy(() -> customerService.findByAge(30)));
+
+        seed(1000, 40, "large");
+        assertEquals(5, rowsReturnedBy(() -> customerService.findByAge(30)));
+    }
+
+    @Test
+    void findersLoadOnlyMatchingRows() {
+        seed(3, 30, "match");
+        seed(200, 40, "other");
+
+        assertEquals(1, entitiesLoadedBy(() -> customerService.findByEmail("match0@example.com")));
+        assertEquals(1, rowsReturnedBy(() -> customerService.findByName("match0", "Customer")));
+        assertEquals(3, rowsReturnedBy(() -> customerService.findAllProMembers()));
+    }
+
+    @Test
+    void listFindersReturnProjectionsWithoutLoadingEntities() {
+        seed(3, 30, "match");
+
+        assertEquals(0, entitiesLoadedBy(() -> customerService.findAll()));
+        assertEquals(0, entitiesLoadedBy(() -> customerService.findByAge(30)));
+        assertEquals(0, entitiesLoadedBy(() -> customerService.sortByDobPage(true, null, 2)));
+        assertEquals("match0@example.com", customerService.findByName("match0", "Customer").get(0).getEmail());
+    }
+
+    @Test
+    void keysetPagesVisitEveryCustomerOnceInOrder() {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 53; i++)
+            customers.add(new Customer(null, "page" + i, "Customer", i % 8 == 0 ? null : new Date((i % 7) * 86_400_000L),
+                    "page" + i + "@example.com", "averyverystrongpassword", false));
+        customerRepository.saveAll(customers);
+
+        List<CustomerSummary> oldestFirst = customerService.sortByDob(true);
+        assertNull(oldestFirst.get(0).getDateOfBirth());
+        assertFalse(oldestFirst.get(7).getDateOfBirth().after(oldestFirst.get(52).getDateOfBirth()));
+
+        assertEquals(ids(oldestFirst), ids(walk(cursor -> customerService.sortByDobPage(true, cursor, 5))));
+        assertEquals(ids(customerService.sortByDob(false)), ids(walk(cursor -> customerService.sortByDobPage(false, cursor, 5))));
+        assertEquals(ids(customerService.findAll()), ids(walk(cursor -> customerService.findAllPage(cursor, 5))));
+    }
+
+    @Test
+    void bulkImportReportsEveryRowAndBatchesInserts() throws Exception {
+        seed(1, 30, "taken");
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 250; i++)
+            ndjson.append("{\"firstName\":\"Bulk\",\"lastName\":\"Customer\",\"email\":\"bulk").append(i).append("@example.com\"}\n");
+        ndjson.append("{\"firstName\":\"Bulk\",\"lastName\":\"Customer\",\"email\":\"bulk0@example.com\"}\n");
+        ndjson.append("{\"firstName\":\"Bulk\",\"lastName\":\"Customer\",\"email\":\"taken0@example.com\"}\n");
+        ndjson.append("{\"firstName\":\"Bulk\",\"email\":\"nolastname@example.com\"}\n");
+
+        statistics.clear();
+        CustomerImportResult result = customerImporter.importCustomers(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(250, result.getCreated());
+        assertEquals(2, result.getDuplicates());
+        assertEquals(1, result.getInvalid());
+        assertEquals(CustomerImportRow.Status.DUPLICATE, result.getRows().get(250).getStatus());
+        assertEquals(CustomerImportRow.Status.INVALID, result.getRows().get(252).getStatus());
+        assertEquals(251, customerRepository.count());
+        assertTrue(statistics.getPrepareStatementCount() < 20, "inserts weren't batched");
+
+        String array = "[{\"firstName\":\"Array\",\"lastName\":\"Customer\",\"email\":\"array@example.com\"}]";
+        assertEquals(1, customerImporter.importCustomers(
+                new ByteArrayInputStream(array.getBytes(StandardCharsets.UTF_8))).getCreated());
+    }
+
+    @Test
+    void concurrentSignupsWithTheSameEmailCreateExactlyOneCustomer() throws Exception {
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> signups = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            signups.add(pool.submit(() -> {
+                start.await();
+                try {
+                    customerService.addNew(new Customer(null, "Race", "Customer", new Date(0),
+                            "race@example.com", "averyverystrongpassword", false));
+                    return true;
+                } catch (CustomerAlreadyExistingException e) {
+                    return false;
+                }
+            }));
+        start.countDown();
+
+        int successes = 0;
+        for (Future<Boolean> signup : signups)
+            successes += signup.get() ? 1 : 0;
+        pool.shutdown();
+
+        assertEquals(1, successes);
+        assertEquals(1, customerRepository.count());
+    }
+
+    @Test
+    void addNewSkipsTheEmailLookup() {
+        int creates = 500;
+        long[] checkThenInsert = new long[creates];
+        long[] insertOnly = new long[creates];
+        for (int i = 0; i < creates; i++) {
+            Customer old = new Customer(null, "Old", "Customer", new Date(0),
+                    "old" + i + "@example.com", "averyverystrongpassword", false);
+            long start = System.nanoTime();
+            if (customerRepository.findCustomerByEmail(old.getEmail()).isEmpty())
+                customerRepository.save(old);
+            checkThenInsert[i] = System.nanoTime() - start;
+        }
+
+        statistics.clear();
+        for (int i = 0; i < creates; i++) {
+            Customer customer = new Customer(null, "New", "Customer", new Date(0),
+                    "new" + i + "@example.com", "averyverystrongpassword", false);
+            long start = System.nanoTime();
+            customerService.addNew(customer);
+            insertOnly[i] = System.nanoTime() - start;
+        }
+
+        assertEquals(0, statistics.getQueryExecutionCount());
+        assertThrows(CustomerAlreadyExistingException.class, () -> customerService.addNew(new Customer(null, "New",
+                "Customer", new Date(0), "new0@example.com", "averyverystrongpassword", false)));
+        System.out.printf("p99 create latency: check-then-insert %d us, insert only %d us%n",
+                p99(checkThenInsert) / 1000, p99(insertOnly) / 1000);
+    }
+
+    @Test
+    void ageRangeQueriesMatchTheDerivedAge() {
+        LocalDate today = LocalDate.now();
+        List<Customer> customers = new ArrayList<>();
+        for (int age = 28; age <= 33; age++)
+            for (int days = -1; days <= 1; days++)      //around the birthday
+                customers.add(new Customer(null, "Age" + age, "Customer",
+                        Date.from(today.minusYears(age).plusDays(days).atStartOfDay(ZoneId.systemDefault()).toInstant()),
+                        "age" + age + "_" + (days + 1) + "@example.com", "averyverystrongpassword", false));
+        customerRepository.saveAll(customers);
+
+        assertEquals(ids(customers, 30, 30), ids(customerService.findByAge(30)).stream().sorted().toList());
+        assertEquals(ids(customers, 29, 32), ids(customerService.findByAgeRange(29, 32)).stream().sorted().toList());
+    }
+
+    @Test
+    void criteriaSearchMatchesTheCombinedFindersWithOneQuery() {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 120; i++)
+            customers.add(new Customer(null, "First" + i % 3, "Last" + i % 2, dateOfBirth(25 + i % 10),
+                    "criteria" + i + "@example.com", "averyverystrongpassword", i % 4 == 0));
+        customerRepository.saveAll(customers);
+
+        Set<Long> combined = new HashSet<>(ids(customerService.findByName("First1", "Last0")));
+        combined.retainAll(ids(customerService.findByAgeRange(27, 31)));
+        combined.retainAll(ids(customerService.findAllProMembers()));
+
+        statistics.clear();
+        List<CustomerSummary> found = customerService.findByCriteria(
+                new CustomerCriteria("First1", "Last0", null, 27, 31, null, null, true),
+                Sort.by(Sort.Direction.DESC, "dateOfBirth"), null);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertFalse(found.isEmpty());
+        assertEquals(combined, new HashSet<>(ids(found)));
+        for (int i = 1; i < found.size(); i++)
+            assertFalse(found.get(i).getDateOfBirth().after(found.get(i - 1).getDateOfBirth()));
+
+        LocalDate bornTo = LocalDate.now().minusYears(30);
+        assertEquals(ids(customerService.findByAgeRange(30, 34)).stream().sorted().toList(),
+                ids(customerService.findByCriteria(new CustomerCriteria(null, null, null, null, null, null, bornTo, null),
+                        Sort.unsorted(), 1000)));
+        assertEquals(5, customerService.findByCriteria(new CustomerCriteria(), Sort.unsorted(), 5).size());
+        assertTrue(customerService.findByCriteria(new CustomerCriteria(null, null, null, 40, 30, null, null, null),
+                Sort.unsorted(), null).isEmpty());
+        assertThrows(CustomerSearchException.class, () -> customerService.findByCriteria(new CustomerCriteria(),
+                Sort.by("password"), null));
+    }
+
+    @Test
+    void updateToTakenEmailIsRejected() {
+        seed(2, 30, "update");
+        Long id = customerRepository.findCustomerByEmail("update0@example.com").orElseThrow().getId();
+
+        assertThrows(CustomerAlreadyExistingException.class,
+                () -> customerService.update(id, null, null, null, "update1@example.com", null, true));
+        assertEquals("update0@example.com", customerRepository.findById(id).orElseThrow().getEmail());
+    }
+
+    @Test
+    void updateWritesThePastDateOfBirth() throws Exception {
+        seed(1, 30, "birthday");
+        Long id = customerRepository.findCustomerByEmail("birthday0@example.com").orElseThrow().getId();
+
+        customerService.update(id, null, null, dateOfBirth(42), null, null, false);
+        assertEquals(42, customerRepository.findById(id).orElseThrow().getAge());
+
+        //a date of birth in the future is ignored
+        customerService.update(id, null, null, new Date(System.currentTimeMillis() + 86_400_000L), null, null, false);
+        assertEquals(42, customerRepository.findById(id).orElseThrow().getAge());
+    }
+
+    @Test
+    void onlyTheEmailIndexMeansTheEmailIsTaken() {
+        assertTrue(CustomerAlreadyExistingException.isEmailTaken(violation("PUBLIC.UK_CUSTOMER_EMAIL_INDEX_5")));
+        assertFalse(CustomerAlreadyExistingException.isEmailTaken(violation(null)));
+        assertFalse(CustomerAlreadyExistingException.isEmailTaken(violation("customer.first_name not null")));
+    }
+
+    @Test
+    void concurrentPatchesLoseNoUpdates() throws Exception {
+        Long id = customerRepository.save(new Customer(null, "Counter", "0", new Date(0),
+                "counter@example.com", "averyverystrongpassword", false)).getId();
+        int threads = 8;
+        int increments = 25;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            workers.add(pool.submit(() -> {
+                start.await();
+                int conflicts = 0;
+                for (int done = 0; done < increments; ) {
+                    //read-modify-write of the last name as a counter, a lost update would skip a number
+                    Customer customer = customerRepository.findById(id).orElseThrow();
+                    String next = String.valueOf(Integer.parseInt(customer.getLastName()) + 1);
+                    try {
+                        customerService.patch(id, new CustomerPatch(null, next, null, null, null, null, customer.getVersion()));
+                        done++;
+                    } catch (CustomerVersionConflictException e) {
+                        conflicts++;
+                    }
+                }
+                return conflicts;
+            }));
+        start.countDown();
+
+        int conflicts = 0;
+        for (Future<Integer> worker : workers)
+            conflicts += worker.get();
+        pool.shutdown();
+
+        Customer customer = customerRepository.findById(id).orElseThrow();
+        assertEquals(String.valueOf(threads * increments), customer.getLastName());
+        assertEquals(threads * increments, customer.getVersion());
+        System.out.printf("%d patches, %d conflicts retried%n", threads * increments, conflicts);
+    }
+
+    @Test
+    void patchWritesWithOneStatement() throws Exception {
+        int writes = 500;
+        seed(writes, 40, "patch");
+        List<Customer> customers = customerRepository.findAll();
+        long[] loadAndUpdate = new long[writes];
+        long[] patch = new long[writes];
+
+        long patchStatements = 0;
+        for (int i = 0; i < writes; i++) {
+            Customer customer = customers.get(i);
+            long start = System.nanoTime();
+            customerService.update(customer.getId(), "Updated" + i, null, null, null, null, true);
+            loadAndUpdate[i] = System.nanoTime() - start;
+
+            long statementsBefore = statistics.getPrepareStatementCount();
+            start = System.nanoTime();
+            customerService.patch(customer.getId(), new CustomerPatch("Patched" + i, null, null, null, null, null,
+                    customer.getVersion() + 1));
+            patch[i] = System.nanoTime() - start;
+            patchStatements += statistics.getPrepareStatementCount() - statementsBefore;
+        }
+
+        assertEquals(writes, patchStatements);
+        assertThrows(CustomerVersionConflictException.class, () -> customerService.patch(customers.get(0).getId(),
+                new CustomerPatch("Stale", null, null, null, null, null, customers.get(0).getVersion())));
+        assertThrows(CustomerVersionRequiredException.class, () -> customerService.patch(customers.get(0).getId(),
+                new CustomerPatch("Unversioned", null, null, null, null, null, null)));
+        assertEquals("Patched0", customerRepository.findById(customers.get(0).getId()).orElseThrow().getFirstName());
+        System.out.printf("p99 update latency: load and update %d us, patch %d us%n",
+                p99(loadAndUpdate) / 1000, p99(patch) / 1000);
+    }
+
+    @Test
+    void bulkDeleteReportsMissingIdsAndBeatsTheLoop() {
+        int deletes = 500;
+        seed(deletes, 40, "loop");
+        seed(deletes, 40, "bulk");
+        List<Long> loopIds = customerRepository.findAll().stream()
+                .filter(customer -> customer.getEmail().startsWith("loop")).map(Customer::getId).toList();
+        List<Long> bulkIds = new ArrayList<>(customerRepository.findAll().stream()
+                .filter(customer -> customer.getEmail().startsWith("bulk")).map(Customer::getId).toList());
+
+        long start = System.nanoTime();
+        for (Long id : loopIds)
+            customerService.deleteById(id);
+        long loop = System.nanoTime() - start;
+
+        bulkIds.add(-1L);
+        statistics.clear();
+        start = System.nanoTime();
+        CustomerDeleteResult<Long> result = customerService.deleteByIds(bulkIds);
+        long bulk = System.nanoTime() - start;
+
+        assertEquals(deletes, result.getDeleted().size());
+        assertEquals(List.of(-1L), result.getNotFound());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, customerRepository.count());
+        System.out.printf("deletes per second: one by one %d, bulk %d%n",
+                deletes * 1_000_000_000L / loop, deletes * 1_000_000_000L / bulk);
+    }
+
+    private static long p99(long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+    }
+
+    /**
+     * helper method to follow the next cursors until the last page
+     * @param pages function loading the page of a cursor
+     * @return all customers of all pages in the visited order
+     */
+    private List<CustomerSummary> walk(Function<String, CustomerPage<CustomerSummary>> pages) {
+        List<CustomerSummary> visited = new ArrayList<>();
+        String cursor = null;
+        do {
+            CustomerPage<CustomerSummary> page = pages.apply(cursor);
+            visited.addAll(page.getCustomers());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return visited;
+    }
+
+    private static List<Long> ids(List<CustomerSummary> customers) {
+        return customers.stream().map(CustomerSummary::getId).toList();
+    }
+
+    /**
+     * helper method to select the ids of the customers whose derived age lies in the range
+     * @param customers the customers to select from
+     * @param minAge minimum age (inclusive)
+     * @param maxAge maximum age (inclusive)
+     * @return the sorted ids of the matching customers
+     */
+    private static List<Long> ids(List<Customer> customers, int minAge, int maxAge) {
+        return customers.stream()
+                .filter(customer -> customer.getAge() >= minAge && customer.getAge() <= maxAge)
+                .map(Customer::getId)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * helper method to compute a date of birth for an age
+     * @param age age in years
+     * @return date of birth of someone who turned {@param age} a month ago
+     */
+    private static Date dateOfBirth(int age) {
+        return Date.from(LocalDate.now().minusYears(age).minusMonths(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * helper method to store customers in the database
+     * @param count number of customers to store
+     * @param age age of every stored customer, customers with the age 30 are pro-members
+     * @param prefix prefix for the first name and the email, keeps them unique between seed calls
+     */
+    private void seed(int count, int age, String prefix) {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            customers.add(new Customer(null, prefix + i, "Customer", dateOfBirth(age),
+                    prefix + i + "@example.com", "averyverystrongpassword", age == 30));
+        customerRepository.saveAll(customers);
+    }
+
+    /**
+     * helper method to count the entities hydrated by Hibernate while running the action
+     * @param action the call to measure
+     * @return number of loaded entities
+     */
+    private long entitiesLoadedBy(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getEntityLoadCount();
+    }
+
+    /**
+     * helper method to count the rows the queries of the action returned
+     * @param action the call to measure
+     * @return number of returned rows
+     */
+    private long rowsReturnedBy(Runnable action) {
+        statistics.clear();
+        action.run();
+        return Arrays.stream(statistics.getQueries())
+                .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionRowCount())
+                .sum();
+    }
+
+    /**
+     * helper method to build a violation as Spring translates it
+     * @param constraint the constraint name the database reported, null if it didn't name one
+     * @return DataIntegrityViolationException caused by a ConstraintViolationException
+     */
+    private static DataIntegrityViolationException violation(String constraint) {
+        return new DataIntegrityViolationException("violation",
+                new ConstraintViolationException("violation", new SQLException(), constraint));
+    }
+}